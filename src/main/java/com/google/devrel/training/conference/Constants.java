@@ -14,4 +14,14 @@ public class Constants {
     public static final String API_EXPLORER_CLIENT_ID = Constant.API_EXPLORER_CLIENT_ID;
 
     public static final String MEMCACHE_ANNOUNCEMENTS_KEY = "RECENT_ANNOUNCEMENTS";
+    public static final String MEMCACHE_FACETS_KEY = "FACET_COUNTS";
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * The maximum number of conferences read for a page when some filters are evaluated in
+     * memory. Past it, the page is returned short, with a nextPageToken.
+     */
+    public static final int MAX_SCANNED_PER_PAGE = 1000;
 }
\ No newline at end of file
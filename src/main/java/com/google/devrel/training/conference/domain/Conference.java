@@ -1,7 +1,7 @@
 package com.google.devrel.training.conference.domain;
 
-import static com.google.devrel.training.conference.service.OfyService.ofy;
 import com.googlecode.objectify.condition.IfNotDefault;
+import com.googlecode.objectify.condition.ValueIf;
 
 import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.ApiResourceProperty;
@@ -9,12 +9,16 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.devrel.training.conference.form.ConferenceForm;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.AlsoLoad;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.annotation.Parent;
 
-import java.util.Calendar;
+import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
 
@@ -22,7 +26,14 @@ import java.util.List;
  * Conference class stores conference information.
  */
 @Entity
-public class Conference {
+public class Conference implements Serializable {
+
+    private static final long serialVersionUID = 3L;
+
+    /**
+     * The value of startMillis and endMillis when the conference has no such date.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
 
     private static final String DEFAULT_CITY = "Default City";
 
@@ -60,6 +71,12 @@ public class Conference {
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
     private String organizerUserId;
 
+    /**
+     * The display name of the organizer, attached by OrganizerHydrator. Not persisted.
+     */
+    @Ignore
+    private String organizerDisplayName;
+
     /**
      * Topics related to this conference.
      */
@@ -72,14 +89,18 @@ public class Conference {
     @Index(IfNotDefault.class) private String city;
 
     /**
-     * The starting date of this conference.
+     * The starting date of this conference in milliseconds since the epoch, NO_DATE when it
+     * has none.
      */
-    private Date startDate;
+    @IgnoreSave(IfNoDate.class)
+    private long startMillis = NO_DATE;
 
     /**
-     * The ending date of this conference.
+     * The ending date of this conference in milliseconds since the epoch, NO_DATE when it has
+     * none.
      */
-    private Date endDate;
+    @IgnoreSave(IfNoDate.class)
+    private long endMillis = NO_DATE;
 
     /**
      * Indicating the starting month derived from startDate.
@@ -89,6 +110,38 @@ public class Conference {
     @Index
     private int month;
 
+    /**
+     * The day buckets covered by this conference, derived from startDate and endDate.
+     *
+     * We need this for date-range queries, see DateBuckets.
+     */
+    @Index
+    private List<Integer> days;
+
+    /**
+     * The week buckets covered by this conference, for date-range queries spanning many days.
+     */
+    @Index
+    private List<Integer> weeks;
+
+    /**
+     * The latitude of the venue, in degrees, null when unknown.
+     */
+    private Double latitude;
+
+    /**
+     * The longitude of the venue, in degrees, null when unknown.
+     */
+    private Double longitude;
+
+    /**
+     * The geohash cells containing the venue at every precision, derived from the coordinates.
+     *
+     * We need this for proximity queries, see GeoCells.
+     */
+    @Index
+    private List<String> geoCells;
+
     /**
      * The maximum capacity of this conference.
      */
@@ -97,10 +150,38 @@ public class Conference {
 
     /**
      * Number of seats currently available.
+     *
+     * Only queried for the conferences with a few seats left, so it's indexed in that range
+     * alone and the write-backs of the seat count don't rewrite index rows most of the time.
      */
-    @Index
+    @Index(IfFewSeatsLeft.class)
     private int seatsAvailable;
 
+    /**
+     * Conferences with fewer seats left than this have their seatsAvailable indexed.
+     */
+    public static final int FEW_SEATS_LEFT = 10;
+
+    /**
+     * The condition for indexing seatsAvailable, which covers the ranges the queries filter on.
+     */
+    public static class IfFewSeatsLeft extends ValueIf<Integer> {
+        @Override
+        public boolean matchesValue(Integer value) {
+            return value != null && value > 0 && value < FEW_SEATS_LEFT;
+        }
+    }
+
+    /**
+     * The condition for leaving out the dates a conference doesn't have.
+     */
+    public static class IfNoDate extends ValueIf<Long> {
+        @Override
+        public boolean matchesValue(Long value) {
+            return value == null || value == NO_DATE;
+        }
+    }
+
     /**
      * Just making the default constructor private.
      */
@@ -132,9 +213,14 @@ public class Conference {
         return profileKey;
     }
 
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public Key<Conference> getKey() {
+        return Key.create(profileKey, Conference.class, id);
+    }
+
     // Get a String version of the key
     public String getWebsafeKey() {
-        return Key.create(profileKey, Conference.class, id).getString();
+        return getKey().getString();
     }
 
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
@@ -145,16 +231,19 @@ public class Conference {
     /**
      * Returns organizer's display name.
      *
-     * @return organizer's display name. If there is no Profile, return his/her userId.
+     * @return organizer's display name. If no Profile was attached, return his/her userId.
      */
     public String getOrganizerDisplayName() {
-        // Profile organizer = ofy().load().key(Key.create(Profile.class, organizerUserId)).now();
-        Profile organizer = ofy().load().key(getProfileKey()).now();
-        if (organizer == null) {
-            return organizerUserId;
-        } else {
-            return organizer.getDisplayName();
-        }
+        return organizerDisplayName == null ? organizerUserId : organizerDisplayName;
+    }
+
+    /**
+     * Attaches the organizer's Profile loaded by the caller, see OrganizerHydrator.
+     *
+     * @param organizer the organizer's Profile, or null if there is none.
+     */
+    public void attachOrganizer(Profile organizer) {
+        this.organizerDisplayName = organizer == null ? null : organizer.getDisplayName();
     }
 
     /**
@@ -170,25 +259,67 @@ public class Conference {
     }
 
     /**
-     * Returns a defensive copy of startDate if not null.
-     * @return a defensive copy of startDate if not null.
+     * Returns the starting date for the API, use getStartMillis otherwise.
+     * @return a new Date, or null if there is no starting date.
      */
     public Date getStartDate() {
-        return startDate == null ? null : new Date(startDate.getTime());
+        return startMillis == NO_DATE ? null : new Date(startMillis);
     }
 
     /**
-     * Returns a defensive copy of endDate if not null.
-     * @return a defensive copy of endDate if not null.
+     * Returns the ending date for the API, use getEndMillis otherwise.
+     * @return a new Date, or null if there is no ending date.
      */
     public Date getEndDate() {
-        return endDate == null ? null : new Date(endDate.getTime());
+        return endMillis == NO_DATE ? null : new Date(endMillis);
+    }
+
+    /**
+     * Returns the starting date.
+     * @return the milliseconds since the epoch, or NO_DATE if there is no starting date.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Returns the ending date.
+     * @return the milliseconds since the epoch, or NO_DATE if there is no ending date.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Reads the startDate property of the conferences saved before the dates were millis.
+     */
+    @SuppressWarnings("unused")
+    private void importStartDate(@AlsoLoad("startDate") Date startDate) {
+        this.startMillis = startDate == null ? NO_DATE : startDate.getTime();
+    }
+
+    /**
+     * Reads the endDate property of the conferences saved before the dates were millis.
+     */
+    @SuppressWarnings("unused")
+    private void importEndDate(@AlsoLoad("endDate") Date endDate) {
+        this.endMillis = endDate == null ? NO_DATE : endDate.getTime();
     }
 
     public int getMonth() {
         return month;
     }
 
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
     public int getMaxAttendees() {
         return maxAttendees;
     }
@@ -211,16 +342,16 @@ public class Conference {
         this.city = conferenceForm.getCity() == null ? DEFAULT_CITY : conferenceForm.getCity();
 
         Date startDate = conferenceForm.getStartDate();
-        this.startDate = startDate == null ? null : new Date(startDate.getTime());
+        this.startMillis = startDate == null ? NO_DATE : startDate.getTime();
         Date endDate = conferenceForm.getEndDate();
-        this.endDate = endDate == null ? null : new Date(endDate.getTime());
-        if (this.startDate != null) {
+        this.endMillis = endDate == null ? NO_DATE : endDate.getTime();
+        if (this.startMillis != NO_DATE) {
             // Getting the starting month for a composite query.
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(this.startDate);
-            // Calendar.MONTH is zero based, so adding 1.
-            this.month = calendar.get(calendar.MONTH) + 1;
+            this.month = DateBuckets.monthOf(startMillis);
         }
+        conferenceForm.checkLocation();
+        this.latitude = conferenceForm.getLatitude();
+        this.longitude = conferenceForm.getLongitude();
         // Check maxAttendees value against the number of already allocated seats.
         int seatsAllocated = maxAttendees - seatsAvailable;
         if (conferenceForm.getMaxAttendees() < seatsAllocated) {
@@ -233,18 +364,34 @@ public class Conference {
         this.seatsAvailable = this.maxAttendees - seatsAllocated;
     }
 
-    public void bookSeats(final int number) {
-        if (seatsAvailable < number) {
-            throw new IllegalArgumentException("There are no seats available.");
-        }
-        seatsAvailable = seatsAvailable - number;
+    /**
+     * Overwrites seatsAvailable with the total aggregated from the seat shards.
+     *
+     * Seats are booked and given back on the SeatShard entities, this is only a denormalized
+     * copy used by queries and for display.
+     *
+     * @param seatsAvailable the number of seats available in all the shards.
+     */
+    public void syncSeatsAvailable(final int seatsAvailable) {
+        this.seatsAvailable = seatsAvailable;
     }
 
-    public void giveBackSeats(final int number) {
-        if (seatsAvailable + number > maxAttendees) {
-            throw new IllegalArgumentException("The number of seats will exceeds the capacity.");
-        }
-        seatsAvailable = seatsAvailable + number;
+    /**
+     * Derives the date buckets from the dates before every save, so that they're also set on the
+     * conferences saved before they existed.
+     */
+    @OnSave
+    private void updateDateBuckets() {
+        this.days = DateBuckets.days(startMillis, endMillis);
+        this.weeks = DateBuckets.weeks(startMillis, endMillis);
+    }
+
+    /**
+     * Derives the geohash cells from the coordinates before every save.
+     */
+    @OnSave
+    private void updateGeoCells() {
+        this.geoCells = GeoCells.cellsOf(latitude, longitude);
     }
 
     @Override
@@ -260,11 +407,11 @@ public class Conference {
                 stringBuilder.append("\t").append(topic).append("\n");
             }
         }
-        if (startDate != null) {
-            stringBuilder.append("StartDate: ").append(startDate.toString()).append("\n");
+        if (startMillis != NO_DATE) {
+            stringBuilder.append("StartDate: ").append(getStartDate()).append("\n");
         }
-        if (endDate != null) {
-            stringBuilder.append("EndDate: ").append(endDate.toString()).append("\n");
+        if (endMillis != NO_DATE) {
+            stringBuilder.append("EndDate: ").append(getEndDate()).append("\n");
         }
         stringBuilder.append("Max Attendees: ").append(maxAttendees).append("\n");
         return stringBuilder.toString();
@@ -0,0 +1,37 @@
+package com.google.devrel.training.conference.domain;
+
+/**
+ * What the conference detail page displays: the conference with its organizer, and whether
+ * the user attends it or waits for a seat.
+ */
+public class ConferenceDetail {
+
+    private Conference conference;
+
+    private boolean registered;
+
+    private boolean waitlisted;
+
+    public ConferenceDetail() {}
+
+    public ConferenceDetail(Conference conference, boolean registered, boolean waitlisted) {
+        this.conference = conference;
+        this.registered = registered;
+        this.waitlisted = waitlisted;
+    }
+
+    /**
+     * Returns the conference, with the display name of its organizer.
+     */
+    public Conference getConference() {
+        return conference;
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public boolean isWaitlisted() {
+        return waitlisted;
+    }
+}
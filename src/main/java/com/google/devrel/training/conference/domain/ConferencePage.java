@@ -0,0 +1,35 @@
+package com.google.devrel.training.conference.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the results of a list endpoint, as stored by the QueryCache.
+ */
+public class ConferencePage implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final ArrayList<ConferenceSnapshot> items;
+
+    private final String nextPageToken;
+
+    public ConferencePage(List<ConferenceSnapshot> items, String nextPageToken) {
+        this.items = new ArrayList<>(items);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<ConferenceSnapshot> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the cursor of the next page.
+     *
+     * @return the cursor of the next page, null when this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
@@ -0,0 +1,126 @@
+package com.google.devrel.training.conference.domain;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A Conference as rendered in list responses, flat and immutable.
+ *
+ * Built once per page of results with the organizer's display name, see ConferenceSnapshots.
+ * Its getters only return fields, so serializing a page served by the QueryCache doesn't copy
+ * the topics, encode the key or look up the organizer again.
+ */
+public class ConferenceSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final long id;
+
+    private final String name;
+
+    private final String description;
+
+    private final String organizerDisplayName;
+
+    private final List<String> topics;
+
+    private final String city;
+
+    /**
+     * Shared by every response serializing this snapshot, never modified.
+     */
+    private final Date startDate;
+
+    private final Date endDate;
+
+    private final int month;
+
+    private final Double latitude;
+
+    private final Double longitude;
+
+    private final int maxAttendees;
+
+    private final int seatsAvailable;
+
+    private final String websafeKey;
+
+    /**
+     * Takes the values of the given conference.
+     *
+     * @param conference the Conference, with its organizer attached.
+     */
+    public ConferenceSnapshot(Conference conference) {
+        this.id = conference.getId();
+        this.name = conference.getName();
+        this.description = conference.getDescription();
+        this.organizerDisplayName = conference.getOrganizerDisplayName();
+        this.topics = conference.getTopics();
+        this.city = conference.getCity();
+        this.startDate = conference.getStartDate();
+        this.endDate = conference.getEndDate();
+        this.month = conference.getMonth();
+        this.latitude = conference.getLatitude();
+        this.longitude = conference.getLongitude();
+        this.maxAttendees = conference.getMaxAttendees();
+        this.seatsAvailable = conference.getSeatsAvailable();
+        this.websafeKey = conference.getWebsafeKey();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getOrganizerDisplayName() {
+        return organizerDisplayName;
+    }
+
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public int getMaxAttendees() {
+        return maxAttendees;
+    }
+
+    public int getSeatsAvailable() {
+        return seatsAvailable;
+    }
+
+    public String getWebsafeKey() {
+        return websafeKey;
+    }
+}
@@ -0,0 +1,129 @@
+package com.google.devrel.training.conference.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Day and week buckets of dates, in UTC, for date-range queries.
+ *
+ * A day bucket is the number of days since the epoch, a week bucket the number of weeks since
+ * the epoch. A conference is indexed in every bucket it covers, so a date range resolves to one
+ * equality lookup per bucket of the range.
+ */
+public class DateBuckets {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final int DAYS_PER_WEEK = 7;
+
+    private static final long DAYS_PER_ERA = 146097;
+
+    private static final long DAYS_FROM_0000_03_01_TO_EPOCH = 719468;
+
+    /**
+     * Conferences longer than this many days are indexed by their first MAX_DAYS days only.
+     */
+    public static final int MAX_DAYS = 366;
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return dividend % divisor < 0 ? quotient - 1 : quotient;
+    }
+
+    /**
+     * Returns the day bucket of the given date.
+     *
+     * @param date the date.
+     * @return the number of days since the epoch, in UTC.
+     */
+    public static int dayOf(Date date) {
+        return dayOf(date.getTime());
+    }
+
+    /**
+     * Returns the day bucket of the given time.
+     *
+     * @param millis the milliseconds since the epoch.
+     * @return the number of days since the epoch, in UTC.
+     */
+    public static int dayOf(long millis) {
+        return (int) floorDiv(millis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the month of the given time, without going through a Calendar.
+     *
+     * @param millis the milliseconds since the epoch.
+     * @return the month in UTC, 1 for January.
+     */
+    public static int monthOf(long millis) {
+        // The civil date of a day count, with years starting in March so that the leap day is
+        // the last one of the year.
+        long day = floorDiv(millis, MILLIS_PER_DAY) + DAYS_FROM_0000_03_01_TO_EPOCH;
+        long dayOfEra = day - floorDiv(day, DAYS_PER_ERA) * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        return (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+    }
+
+    /**
+     * Returns the week bucket of the given day.
+     *
+     * @param day a day bucket.
+     * @return the number of weeks since the epoch.
+     */
+    public static int weekOf(int day) {
+        return (int) floorDiv(day, DAYS_PER_WEEK);
+    }
+
+    /**
+     * Returns the last day of a conference, its first day when it has no end date.
+     */
+    public static int lastDayOf(long startMillis, long endMillis) {
+        int startDay = dayOf(startMillis);
+        return endMillis == Conference.NO_DATE ? startDay : Math.max(startDay, dayOf(endMillis));
+    }
+
+    /**
+     * Returns the day buckets covered by a conference.
+     *
+     * @param startMillis the start date of the conference, Conference.NO_DATE when it has none.
+     * @param endMillis the end date of the conference, Conference.NO_DATE when it has none.
+     * @return the day buckets, empty without start date.
+     */
+    public static List<Integer> days(long startMillis, long endMillis) {
+        if (startMillis == Conference.NO_DATE) {
+            return Collections.emptyList();
+        }
+        int startDay = dayOf(startMillis);
+        int lastDay = Math.min(lastDayOf(startMillis, endMillis), startDay + MAX_DAYS - 1);
+        List<Integer> days = new ArrayList<>(lastDay - startDay + 1);
+        for (int day = startDay; day <= lastDay; day++) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    /**
+     * Returns the week buckets covered by a conference.
+     *
+     * @param startMillis the start date of the conference, Conference.NO_DATE when it has none.
+     * @param endMillis the end date of the conference, Conference.NO_DATE when it has none.
+     * @return the week buckets, empty without start date.
+     */
+    public static List<Integer> weeks(long startMillis, long endMillis) {
+        if (startMillis == Conference.NO_DATE) {
+            return Collections.emptyList();
+        }
+        int startDay = dayOf(startMillis);
+        int lastDay = Math.min(lastDayOf(startMillis, endMillis), startDay + MAX_DAYS - 1);
+        List<Integer> weeks = new ArrayList<>();
+        for (int week = weekOf(startDay); week <= weekOf(lastDay); week++) {
+            weeks.add(week);
+        }
+        return weeks;
+    }
+}
@@ -0,0 +1,57 @@
+package com.google.devrel.training.conference.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The number of conferences per topic, city and starting month, the largest count first.
+ */
+@SuppressWarnings("serial")
+public class FacetCounts implements Serializable {
+
+    private List<Count> topics = new ArrayList<>();
+
+    private List<Count> cities = new ArrayList<>();
+
+    private List<Count> months = new ArrayList<>();
+
+    public FacetCounts() {}
+
+    public List<Count> getTopics() {
+        return topics;
+    }
+
+    public List<Count> getCities() {
+        return cities;
+    }
+
+    public List<Count> getMonths() {
+        return months;
+    }
+
+    /**
+     * The number of conferences with one value of a facet.
+     */
+    public static class Count implements Serializable {
+
+        private String value;
+
+        private long count;
+
+        public Count() {}
+
+        public Count(String value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
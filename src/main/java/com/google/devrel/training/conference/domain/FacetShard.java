@@ -0,0 +1,100 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FacetShard holds one slice of the number of conferences per facet value.
+ *
+ * The count of a facet value is the sum of its counts in every shard. Each shard is a root
+ * entity in its own entity group, so the updates of different conferences don't contend with
+ * each other.
+ */
+@Entity
+public class FacetShard {
+
+    /**
+     * The number of shards.
+     */
+    public static final int SHARD_COUNT = 10;
+
+    /**
+     * The number of applied updates remembered, to skip the ones that are retried.
+     */
+    private static final int APPLIED_UPDATES = 100;
+
+    /**
+     * The id for the datastore key, the position of this shard between 0 and SHARD_COUNT.
+     */
+    @Id
+    private String id;
+
+    /**
+     * The counts in this shard, by facet value.
+     */
+    private Map<String, Long> counts = new HashMap<>();
+
+    /**
+     * The names of the last updates applied to this shard, the oldest first.
+     */
+    private List<String> appliedUpdates = new ArrayList<>();
+
+    /**
+     * Just making the default constructor private.
+     */
+    private FacetShard() {}
+
+    public FacetShard(final int shardIndex) {
+        this.id = String.valueOf(shardIndex);
+    }
+
+    public static Key<FacetShard> createKey(int shardIndex) {
+        return Key.create(FacetShard.class, String.valueOf(shardIndex));
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Adds the given deltas to the counts, unless the update was already applied.
+     *
+     * @param updateName the name of the update.
+     * @param deltas the deltas, by facet value.
+     * @return false when the update was already applied.
+     */
+    public boolean apply(String updateName, Map<String, Integer> deltas) {
+        if (appliedUpdates.contains(updateName)) {
+            return false;
+        }
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            Long count = counts.get(delta.getKey());
+            long value = (count == null ? 0 : count) + delta.getValue();
+            if (value == 0) {
+                counts.remove(delta.getKey());
+            } else {
+                counts.put(delta.getKey(), value);
+            }
+        }
+        appliedUpdates.add(updateName);
+        if (appliedUpdates.size() > APPLIED_UPDATES) {
+            appliedUpdates.remove(0);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the counts, as when rebuilding them from the conferences.
+     *
+     * @param counts the new counts, by facet value.
+     */
+    public void reset(Map<String, Long> counts) {
+        this.counts = new HashMap<>(counts);
+    }
+}
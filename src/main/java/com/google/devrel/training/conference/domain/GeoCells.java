@@ -0,0 +1,164 @@
+package com.google.devrel.training.conference.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Geohash cells of coordinates, for proximity queries.
+ *
+ * A geohash cell of precision p is split into 32 cells of precision p + 1, and the geohash of a
+ * cell starts with the geohash of the cell containing it. A conference is indexed in the cells
+ * containing its venue at every precision, so the conferences within a cell are found with one
+ * equality lookup.
+ */
+public class GeoCells {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /**
+     * The finest precision, cells of about 150 m by 150 m.
+     */
+    public static final int MAX_PRECISION = 7;
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    /**
+     * Returns the geohash of the cell of the given precision containing the coordinates.
+     *
+     * @param latitude the latitude, in degrees.
+     * @param longitude the longitude, in degrees.
+     * @param precision the number of characters of the geohash.
+     * @return the geohash.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double[] latitudes = {-90, 90};
+        double[] longitudes = {-180, 180};
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean even = true;
+        int bit = 0;
+        int character = 0;
+        while (geohash.length() < precision) {
+            double[] range = even ? longitudes : latitudes;
+            double value = even ? longitude : latitude;
+            double middle = (range[0] + range[1]) / 2;
+            character <<= 1;
+            if (value >= middle) {
+                character |= 1;
+                range[0] = middle;
+            } else {
+                range[1] = middle;
+            }
+            even = !even;
+            if (++bit == 5) {
+                geohash.append(BASE32.charAt(character));
+                bit = 0;
+                character = 0;
+            }
+        }
+        return geohash.toString();
+    }
+
+    /**
+     * Returns the cells containing the given coordinates, from the coarsest to the finest.
+     *
+     * @param latitude the latitude, in degrees, null when unknown.
+     * @param longitude the longitude, in degrees, null when unknown.
+     * @return the geohashes, empty when the coordinates are unknown.
+     */
+    public static List<String> cellsOf(Double latitude, Double longitude) {
+        List<String> cells = new ArrayList<>(MAX_PRECISION);
+        if (latitude == null || longitude == null) {
+            return cells;
+        }
+        String geohash = encode(latitude, longitude, MAX_PRECISION);
+        for (int precision = 1; precision <= MAX_PRECISION; precision++) {
+            cells.add(geohash.substring(0, precision));
+        }
+        return cells;
+    }
+
+    private static double cellHeightDegrees(int precision) {
+        return 180 / Math.pow(2, (5 * precision) / 2);
+    }
+
+    private static double cellWidthDegrees(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+
+    /**
+     * Returns the cells to look up for the points within the given radius of the coordinates:
+     * the cell containing them and its neighbors, at the finest precision whose cells are at
+     * least radiusKm wide and high, the closest to the coordinates first.
+     *
+     * @param latitude the latitude of the center, in degrees.
+     * @param longitude the longitude of the center, in degrees.
+     * @param radiusKm the radius, in kilometers.
+     * @return at most 9 geohashes, the cell containing the coordinates first.
+     */
+    public static Set<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        // Longitude degrees are the shortest on the side of the circle closest to a pole.
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + radiusKm / KM_PER_DEGREE);
+        double kmPerLongitudeDegree =
+                KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(farthestLatitude)), 0.01);
+        int precision = 1;
+        while (precision < MAX_PRECISION
+                && cellHeightDegrees(precision + 1) * KM_PER_DEGREE >= radiusKm
+                && cellWidthDegrees(precision + 1) * kmPerLongitudeDegree >= radiusKm) {
+            precision++;
+        }
+        double height = cellHeightDegrees(precision);
+        double width = cellWidthDegrees(precision);
+        // Offsets of the coordinates from the south-west corner of their cell.
+        double south = (latitude + 90) % height;
+        double west = (longitude + 180) % width;
+        final Map<String, Double> gaps = new HashMap<>();
+        for (int dy = -1; dy <= 1; dy++) {
+            double neighborLatitude = Math.max(-90, Math.min(90 - 1e-9, latitude + dy * height));
+            double gapY = dy < 0 ? south : dy > 0 ? height - south : 0;
+            for (int dx = -1; dx <= 1; dx++) {
+                double neighborLongitude = longitude + dx * width;
+                // Wraps around the antimeridian.
+                neighborLongitude = ((neighborLongitude + 540) % 360) - 180;
+                double gapX = dx < 0 ? west : dx > 0 ? width - west : 0;
+                String cell = encode(neighborLatitude, neighborLongitude, precision);
+                // Planar distance in km to the closest point of the cell, enough to order them.
+                double gap = Math.hypot(gapY * KM_PER_DEGREE, gapX * kmPerLongitudeDegree);
+                Double known = gaps.get(cell);
+                if (known == null || gap < known) {
+                    gaps.put(cell, gap);
+                }
+            }
+        }
+        List<String> cells = new ArrayList<>(gaps.keySet());
+        Collections.sort(cells, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Double.compare(gaps.get(a), gaps.get(b));
+            }
+        });
+        return new LinkedHashSet<>(cells);
+    }
+
+    /**
+     * Returns the great-circle distance between two points.
+     *
+     * @return the distance, in kilometers.
+     */
+    public static double distanceKm(double latitude1, double longitude1,
+            double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
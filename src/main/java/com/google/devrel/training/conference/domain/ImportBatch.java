@@ -0,0 +1,68 @@
+package com.google.devrel.training.conference.domain;
+
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Parent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ImportBatch holds the records of an ImportJob imported by one task.
+ *
+ * The ids of its conferences are allocated the first time the batch runs and kept here, so a
+ * retried task writes the same conferences again instead of duplicating them.
+ */
+@Entity
+public class ImportBatch {
+
+    @Parent
+    private Key<ImportJob> jobKey;
+
+    /**
+     * The position of the batch in the job, plus one since ids can't be zero.
+     */
+    @Id
+    private long id;
+
+    private List<ConferenceForm> records = new ArrayList<>();
+
+    /**
+     * The first of the consecutive conference ids allocated for the records, 0 until then.
+     */
+    private long firstConferenceId;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private ImportBatch() {}
+
+    public ImportBatch(final Key<ImportJob> jobKey, final int batchIndex,
+                       final List<ConferenceForm> records) {
+        this.jobKey = jobKey;
+        this.id = batchIndex + 1;
+        this.records = new ArrayList<>(records);
+    }
+
+    public static Key<ImportBatch> createKey(Key<ImportJob> jobKey, int batchIndex) {
+        return Key.create(jobKey, ImportBatch.class, batchIndex + 1);
+    }
+
+    public int getBatchIndex() {
+        return (int) id - 1;
+    }
+
+    public List<ConferenceForm> getRecords() {
+        return records;
+    }
+
+    public long getFirstConferenceId() {
+        return firstConferenceId;
+    }
+
+    public void setFirstConferenceId(long firstConferenceId) {
+        this.firstConferenceId = firstConferenceId;
+    }
+}
@@ -0,0 +1,132 @@
+package com.google.devrel.training.conference.domain;
+
+import com.google.api.server.spi.config.AnnotationBoolean;
+import com.google.api.server.spi.config.ApiResourceProperty;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ImportJob tracks a bulk import of conferences for one organizer.
+ *
+ * The records are stored in ImportBatch children, imported one batch per task. The job counts
+ * the conferences imported and the records that failed, with the reason of the first failures.
+ */
+@Entity
+public class ImportJob {
+
+    /**
+     * The number of failure reasons kept, past it only the failures are counted.
+     */
+    private static final int MAX_ERRORS = 1000;
+
+    @Id
+    private Long id;
+
+    /**
+     * The organizer of the imported conferences.
+     */
+    private String organizerUserId;
+
+    private int recordCount;
+
+    private int batchCount;
+
+    /**
+     * The index of the next batch to import, batchCount when the job is done.
+     */
+    private int nextBatch;
+
+    private int imported;
+
+    private int failed;
+
+    /**
+     * The reason of the first MAX_ERRORS failures, with the index of the record.
+     */
+    private List<String> errors = new ArrayList<>();
+
+    private Date created;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private ImportJob() {}
+
+    public ImportJob(final long id, final String organizerUserId, final int recordCount,
+                     final int batchCount) {
+        this.id = id;
+        this.organizerUserId = organizerUserId;
+        this.recordCount = recordCount;
+        this.batchCount = batchCount;
+        this.created = new Date();
+    }
+
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public Key<ImportJob> getKey() {
+        return Key.create(ImportJob.class, id);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getOrganizerUserId() {
+        return organizerUserId;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public int getNextBatch() {
+        return nextBatch;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public boolean isDone() {
+        return nextBatch >= batchCount;
+    }
+
+    /**
+     * Records the outcome of the next batch.
+     *
+     * @param imported the number of conferences imported.
+     * @param errors the reasons of the records that failed.
+     */
+    public void completeBatch(int imported, List<String> errors) {
+        this.imported += imported;
+        this.failed += errors.size();
+        for (String error : errors) {
+            if (this.errors.size() >= MAX_ERRORS) {
+                break;
+            }
+            this.errors.add(error);
+        }
+        nextBatch++;
+    }
+}
@@ -0,0 +1,53 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NearlySoldOutIndex holds the conferences that are nearly sold out.
+ *
+ * There is a single instance of it, maintained incrementally when the seats of a conference
+ * change, so the announcement never has to scan the Conference kind.
+ */
+@Entity @Cache
+public class NearlySoldOutIndex {
+
+    private static final String ID = "nearlySoldOut";
+
+    @Id
+    private String id = ID;
+
+    /**
+     * The names of the conferences in the index, by websafe conference key.
+     */
+    private Map<String, String> conferenceNames = new HashMap<>();
+
+    public NearlySoldOutIndex() {}
+
+    public static Key<NearlySoldOutIndex> getKey() {
+        return Key.create(NearlySoldOutIndex.class, ID);
+    }
+
+    public Map<String, String> getConferenceNames() {
+        return conferenceNames;
+    }
+
+    /**
+     * Adds or removes the given conference.
+     *
+     * @param websafeConferenceKey the key of the conference.
+     * @param name the name of the conference, null to remove it from the index.
+     * @return true when the index changed.
+     */
+    public boolean update(String websafeConferenceKey, String name) {
+        if (name == null) {
+            return conferenceNames.remove(websafeConferenceKey) != null;
+        }
+        return !name.equals(conferenceNames.put(websafeConferenceKey, name));
+    }
+}
@@ -3,11 +3,15 @@ package com.google.devrel.training.conference.domain;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.api.server.spi.config.AnnotationBoolean;
+import com.google.api.server.spi.config.ApiResourceProperty;
 import com.google.appengine.repackaged.com.google.common.collect.ImmutableList;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
 import com.googlecode.objectify.annotation.Cache;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.IgnoreSave;
+import com.googlecode.objectify.condition.IfEmpty;
 
 
 // TODO indicate that this class is an Entity
@@ -77,22 +81,27 @@ public class Profile {
 
     }
     
+    /**
+     * The websafe keys of the conferences the user attended before registrations were stored as
+     * Registration entities. Emptied by Registrations.migrate and then no longer saved.
+     */
+    @IgnoreSave(IfEmpty.class)
     private List<String> conferenceKeysToAttend = new ArrayList<>();
-    
+
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
     public List<String> getConferenceKeysToAttend() {
     	return ImmutableList.copyOf(conferenceKeysToAttend);
     }
-    
-    public void addToConferenceKeysToAttend(String conferenceKey){
-    	conferenceKeysToAttend.add(conferenceKey);
-    }
-    
-    public void unregisterFromConference(String conferenceKey) {
-    	if(conferenceKeysToAttend.contains(conferenceKey)) {
-    		conferenceKeysToAttend.remove(conferenceKey);
-    	} else {
-    		throw new IllegalArgumentException("Invalid conferenceKey: " + conferenceKey);
-    	}
+
+    /**
+     * Removes and returns the legacy conference keys.
+     *
+     * @return the websafe keys of the conferences, empty once migrated.
+     */
+    public List<String> takeLegacyConferenceKeys() {
+    	List<String> conferenceKeys = conferenceKeysToAttend;
+    	conferenceKeysToAttend = new ArrayList<>();
+    	return conferenceKeys;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.Parent;
+
+/**
+ * Registration records that a user attends a Conference.
+ *
+ * It's a child of the user's Profile named after the websafe conference key, so checking
+ * whether a user attends a conference is a get by key, and listing the conferences of a user is
+ * an ancestor query that doesn't grow the Profile.
+ */
+@Entity @Cache
+public class Registration {
+
+    @Parent
+    private Key<Profile> profileKey;
+
+    /**
+     * The websafe key of the conference.
+     */
+    @Id
+    private String websafeConferenceKey;
+
+    /**
+     * The conference, indexed for listing its attendees.
+     */
+    @Index
+    private Key<Conference> conferenceKey;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private Registration() {}
+
+    public Registration(final String userId, final String websafeConferenceKey) {
+        this.profileKey = Key.create(Profile.class, userId);
+        this.websafeConferenceKey = websafeConferenceKey;
+        this.conferenceKey = Key.create(websafeConferenceKey);
+    }
+
+    /**
+     * Returns the key of the registration of the given user for the given conference.
+     *
+     * @param userId the id of the user.
+     * @param websafeConferenceKey the websafe key of the conference.
+     * @return the key of the Registration.
+     */
+    public static Key<Registration> createKey(String userId, String websafeConferenceKey) {
+        return Key.create(Key.create(Profile.class, userId), Registration.class,
+                websafeConferenceKey);
+    }
+
+    public Key<Profile> getProfileKey() {
+        return profileKey;
+    }
+
+    public String getWebsafeConferenceKey() {
+        return websafeConferenceKey;
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+}
@@ -0,0 +1,129 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * SeatShard holds one slice of the seat inventory of a Conference.
+ *
+ * Each shard is a root entity in its own entity group, so registrations that touch different
+ * shards of the same conference don't contend with each other, nor with writes to the
+ * Conference. It's the only seat state a registration writes, so it has no indexed properties:
+ * shards are always read by key.
+ */
+@Entity
+public class SeatShard {
+
+    /**
+     * The id for the datastore key, derived from the conference key and the shard index.
+     */
+    @Id
+    private String id;
+
+    /**
+     * The conference this shard belongs to.
+     */
+    private Key<Conference> conferenceKey;
+
+    /**
+     * The position of this shard, between 0 and the number of shards of the conference.
+     */
+    private int shardIndex;
+
+    /**
+     * The number of seats this shard is responsible for.
+     */
+    private int capacity;
+
+    /**
+     * Number of seats currently available in this shard.
+     */
+    private int seatsAvailable;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private SeatShard() {}
+
+    public SeatShard(final Key<Conference> conferenceKey, final int shardIndex,
+                     final int capacity, final int seatsAvailable) {
+        this.id = createId(conferenceKey, shardIndex);
+        this.conferenceKey = conferenceKey;
+        this.shardIndex = shardIndex;
+        this.capacity = capacity;
+        this.seatsAvailable = seatsAvailable;
+    }
+
+    /**
+     * Returns the key of the given shard of the given conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @param shardIndex the position of the shard.
+     * @return the key of the shard.
+     */
+    public static Key<SeatShard> createKey(Key<Conference> conferenceKey, int shardIndex) {
+        return Key.create(SeatShard.class, createId(conferenceKey, shardIndex));
+    }
+
+    private static String createId(Key<Conference> conferenceKey, int shardIndex) {
+        return conferenceKey.getString() + ":" + shardIndex;
+    }
+
+    public Key<SeatShard> getKey() {
+        return Key.create(SeatShard.class, id);
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSeatsAvailable() {
+        return seatsAvailable;
+    }
+
+    public void bookSeats(final int number) {
+        if (seatsAvailable < number) {
+            throw new IllegalArgumentException("There are no seats available.");
+        }
+        seatsAvailable = seatsAvailable - number;
+    }
+
+    public void giveBackSeats(final int number) {
+        if (seatsAvailable + number > capacity) {
+            throw new IllegalArgumentException("The number of seats will exceeds the capacity.");
+        }
+        seatsAvailable = seatsAvailable + number;
+    }
+
+    /**
+     * Adds the given number of seats to both the capacity and the available seats.
+     *
+     * @param number the number of seats to add.
+     */
+    public void addCapacity(final int number) {
+        capacity = capacity + number;
+        seatsAvailable = seatsAvailable + number;
+    }
+
+    /**
+     * Removes up to the given number of unallocated seats from this shard.
+     *
+     * @param number the number of seats to remove.
+     * @return the number of seats actually removed.
+     */
+    public int removeCapacity(final int number) {
+        int removed = Math.min(number, seatsAvailable);
+        capacity = capacity - removed;
+        seatsAvailable = seatsAvailable - removed;
+        return removed;
+    }
+}
@@ -0,0 +1,80 @@
+package com.google.devrel.training.conference.domain;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.Parent;
+
+/**
+ * WaitlistEntry records that a user waits for a seat of a sold out Conference.
+ *
+ * Like a Registration, it's a child of the user's Profile named after the websafe conference
+ * key, so joining a waitlist only writes to the user's own entity group, and the promotion to a
+ * Registration happens within that same group.
+ */
+@Entity
+public class WaitlistEntry {
+
+    @Parent
+    private Key<Profile> profileKey;
+
+    /**
+     * The websafe key of the conference.
+     */
+    @Id
+    private String websafeConferenceKey;
+
+    /**
+     * The conference, indexed with joinedAt for listing its waitlist in order.
+     */
+    @Index
+    private Key<Conference> conferenceKey;
+
+    /**
+     * When the user joined the waitlist, in milliseconds since the epoch.
+     */
+    @Index
+    private long joinedAt;
+
+    /**
+     * Just making the default constructor private.
+     */
+    private WaitlistEntry() {}
+
+    public WaitlistEntry(final String userId, final String websafeConferenceKey,
+                         final long joinedAt) {
+        this.profileKey = Key.create(Profile.class, userId);
+        this.websafeConferenceKey = websafeConferenceKey;
+        this.conferenceKey = Key.create(websafeConferenceKey);
+        this.joinedAt = joinedAt;
+    }
+
+    /**
+     * Returns the key of the entry of the given user on the waitlist of the given conference.
+     *
+     * @param userId the id of the user.
+     * @param websafeConferenceKey the websafe key of the conference.
+     * @return the key of the WaitlistEntry.
+     */
+    public static Key<WaitlistEntry> createKey(String userId, String websafeConferenceKey) {
+        return Key.create(Key.create(Profile.class, userId), WaitlistEntry.class,
+                websafeConferenceKey);
+    }
+
+    public Key<Profile> getProfileKey() {
+        return profileKey;
+    }
+
+    public String getWebsafeConferenceKey() {
+        return websafeConferenceKey;
+    }
+
+    public Key<Conference> getConferenceKey() {
+        return conferenceKey;
+    }
+
+    public long getJoinedAt() {
+        return joinedAt;
+    }
+}
@@ -44,6 +44,16 @@ public class ConferenceForm {
      */
     private int maxAttendees;
 
+    /**
+     * The latitude of the venue, in degrees, optional.
+     */
+    private Double latitude;
+
+    /**
+     * The longitude of the venue, in degrees, optional.
+     */
+    private Double longitude;
+
     private ConferenceForm() {}
 
     /**
@@ -94,4 +104,38 @@ public class ConferenceForm {
     public int getMaxAttendees() {
         return maxAttendees;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Checks that the coordinates are either both set and in range, or both unset.
+     *
+     * @throws IllegalArgumentException when they aren't.
+     */
+    public void checkLocation() {
+        if ((latitude == null) != (longitude == null)
+                || latitude != null && (Math.abs(latitude) > 90 || Math.abs(longitude) > 180)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", "
+                    + longitude);
+        }
+    }
+
+    /**
+     * Sets the coordinates of the venue.
+     *
+     * @param latitude the latitude, in degrees.
+     * @param longitude the longitude, in degrees.
+     * @return this for method chaining.
+     */
+    public ConferenceForm location(Double latitude, Double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        return this;
+    }
 }
@@ -4,12 +4,18 @@ import static com.google.devrel.training.conference.service.OfyService.ofy;
 
 import com.google.api.server.spi.config.AnnotationBoolean;
 import com.google.api.server.spi.config.ApiResourceProperty;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.common.collect.ImmutableList;
+import com.google.devrel.training.conference.Constants;
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.DateBuckets;
+import com.google.devrel.training.conference.service.FilterSelectivity;
 
 import com.googlecode.objectify.cmd.Query;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -20,6 +26,22 @@ public class ConferenceQueryForm {
 
     private static final Logger LOG = Logger.getLogger(ConferenceQueryForm.class.getName());
 
+    /**
+     * The longest date range looked up day by day.
+     */
+    private static final int MAX_DAY_LOOKUPS = 31;
+
+    /**
+     * The longest date range, in weeks.
+     */
+    private static final int MAX_WEEK_LOOKUPS = 53;
+
+    /**
+     * Separates the field pushed down to the datastore from the datastore cursor in the
+     * nextPageToken of the queries with inequality filters.
+     */
+    private static final char PLAN_SEPARATOR = '|';
+
     /**
      * Enum representing a field type.
      */
@@ -45,9 +67,33 @@ public class ConferenceQueryForm {
             this.fieldType = fieldType;
         }
 
-        private String getFieldName() {
+        public String getFieldName() {
             return this.fieldName;
         }
+
+        public FieldType getFieldType() {
+            return this.fieldType;
+        }
+
+        /**
+         * Returns the values of this field in the given conference.
+         *
+         * @param conference the Conference.
+         * @return the values, several for list properties.
+         */
+        public List<?> valuesOf(Conference conference) {
+            switch (this) {
+                case CITY:
+                    return Collections.singletonList(conference.getCity());
+                case TOPIC:
+                    return conference.getTopics() == null
+                            ? Collections.emptyList() : conference.getTopics();
+                case MONTH:
+                    return Collections.singletonList(conference.getMonth());
+                default:
+                    return Collections.singletonList(conference.getMaxAttendees());
+            }
+        }
     }
 
     /**
@@ -75,6 +121,35 @@ public class ConferenceQueryForm {
             return this.queryOperator.contains("<") || this.queryOperator.contains(">") ||
                     this.queryOperator.contains("!");
         }
+
+        /**
+         * Returns whether this is an inequality the datastore can serve with a cursor. It runs
+         * a != filter as two merged queries, whose results have no cursor.
+         */
+        private boolean canBePushedDown() {
+            return isInequalityFilter() && this != NE;
+        }
+
+        /**
+         * Returns whether a property comparing to the filter value with the given result
+         * satisfies this operator.
+         */
+        private boolean matches(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case LT:
+                    return comparison < 0;
+                case GT:
+                    return comparison > 0;
+                case LTEQ:
+                    return comparison <= 0;
+                case GTEQ:
+                    return comparison >= 0;
+                default:
+                    return comparison != 0;
+            }
+        }
     }
 
     /**
@@ -104,6 +179,26 @@ public class ConferenceQueryForm {
         public String getValue() {
             return value;
         }
+
+        /**
+         * Returns whether the given conference satisfies this filter. Like the datastore, a
+         * list property satisfies it when one of its values does.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private boolean matches(Conference conference) {
+            Comparable operand = field.fieldType == FieldType.INTEGER
+                    ? Integer.valueOf(value) : value;
+            for (Object propertyValue : field.valuesOf(conference)) {
+                if (propertyValue == null) {
+                    continue;
+                }
+                int result = ((Comparable) propertyValue).compareTo(operand);
+                if (operator.matches(result)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     /**
@@ -112,29 +207,299 @@ public class ConferenceQueryForm {
     private List<Filter> filters = new ArrayList<>(0);
 
     /**
-     * Holds the first inequalityFilter for checking the feasibility of the whole query.
+     * The maximum number of conferences to return, Constants.DEFAULT_PAGE_SIZE when not set.
+     */
+    private int pageSize;
+
+    /**
+     * The opaque cursor returned as nextPageToken by the previous page, null for the first page.
+     */
+    private String cursor;
+
+    /**
+     * The first day of the date range, null when the query has no date range.
+     */
+    private Date fromDate;
+
+    /**
+     * The last day of the date range, included.
+     */
+    private Date toDate;
+
+    /**
+     * Holds an inequality filter on the field pushed down to the datastore.
      */
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
     private Filter inequalityFilter;
 
+    /**
+     * The inequality filters on the other fields, evaluated in memory.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    private List<Filter> postFilters = new ArrayList<>(0);
+
     public ConferenceQueryForm() {}
 
     /**
-     * Checks the feasibility of the whole query.
+     * Plans the query. The datastore allows inequality filters on a single field, so the
+     * inequality filters on the field that FilterSelectivity observed to be the most selective
+     * go to the datastore along with the equality filters. Those on the other fields become
+     * post-filters, evaluated on the results. So do the != filters, which would leave the
+     * pages without a cursor.
+     *
+     * The selectivity differs between instances and over time, so the field of the first page
+     * is carried by the nextPageToken and the following pages keep its sort order.
+     *
+     * @throws IllegalArgumentException when a value or the field of the cursor is invalid.
      */
-    private void checkFilters() {
+    private void planFilters() {
+        inequalityFilter = null;
+        postFilters = new ArrayList<>(0);
+        Field pushedDown = null;
+        for (Filter filter : this.filters) {
+            if (filter.field.fieldType == FieldType.INTEGER) {
+                // Fails early on invalid values.
+                Integer.parseInt(filter.value);
+            }
+            // Date-range queries are ordered by name within each bucket, so all the inequality
+            // filters become post-filters.
+            if (filter.operator.canBePushedDown() && !hasDateRange() && (pushedDown == null
+                    || FilterSelectivity.passRate(filter.field)
+                            < FilterSelectivity.passRate(pushedDown))) {
+                pushedDown = filter.field;
+            }
+        }
+        if (cursor != null && !hasDateRange()) {
+            pushedDown = cursorField();
+            if (pushedDown != null && !hasInequalityFilter(pushedDown)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
         for (Filter filter : this.filters) {
             if (filter.operator.isInequalityFilter()) {
-                // Only one inequality filter is allowed.
-                if (inequalityFilter != null && !inequalityFilter.field.equals(filter.field)) {
-                    throw new IllegalArgumentException(
-                            "Inequality filter is allowed on only one field.");
+                if (filter.field == pushedDown && filter.operator.canBePushedDown()) {
+                    inequalityFilter = filter;
+                } else {
+                    postFilters.add(filter);
                 }
-                inequalityFilter = filter;
             }
         }
     }
 
+    private boolean hasInequalityFilter(Field field) {
+        for (Filter filter : this.filters) {
+            if (filter.field == field && filter.operator.canBePushedDown()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the field pushed down by the plan of the previous pages, from the cursor.
+     *
+     * @return the field, or null when the previous pages were ordered by name.
+     * @throws IllegalArgumentException when the field is invalid.
+     */
+    private Field cursorField() {
+        int separator = cursor.indexOf(PLAN_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return Field.valueOf(cursor.substring(0, separator));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Returns the nextPageToken of a page read with getQuery, which carries the plan.
+     *
+     * @param next the datastore cursor after the last result of the page.
+     * @return the token to send back as the cursor of the next page.
+     */
+    public String nextPageToken(Cursor next) {
+        return inequalityFilter == null ? next.toWebSafeString()
+                : inequalityFilter.field.name() + PLAN_SEPARATOR + next.toWebSafeString();
+    }
+
+    /**
+     * Returns whether the query has a date range, resolved with getBucketQuery.
+     *
+     * @return true when fromDate or toDate is set.
+     */
+    public boolean hasDateRange() {
+        return fromDate != null || toDate != null;
+    }
+
+    private int fromDay() {
+        return DateBuckets.dayOf(fromDate);
+    }
+
+    private int toDay() {
+        return DateBuckets.dayOf(toDate);
+    }
+
+    /**
+     * Returns whether the date range is looked up by week rather than by day.
+     */
+    private boolean byWeek() {
+        return toDay() - fromDay() + 1 > MAX_DAY_LOOKUPS;
+    }
+
+    /**
+     * Returns the number of buckets the date range is resolved into.
+     *
+     * @return the number of buckets, each looked up by getBucketQuery.
+     * @throws IllegalArgumentException when the date range is incomplete or too long.
+     */
+    public int getBucketCount() {
+        if (fromDate == null || toDate == null) {
+            throw new IllegalArgumentException("Both fromDate and toDate are required.");
+        }
+        if (toDay() < fromDay()) {
+            throw new IllegalArgumentException("toDate is before fromDate.");
+        }
+        if (!byWeek()) {
+            return toDay() - fromDay() + 1;
+        }
+        int weeks = DateBuckets.weekOf(toDay()) - DateBuckets.weekOf(fromDay()) + 1;
+        if (weeks > MAX_WEEK_LOOKUPS) {
+            throw new IllegalArgumentException(
+                    "The date range is limited to " + MAX_WEEK_LOOKUPS + " weeks.");
+        }
+        return weeks;
+    }
+
+    /**
+     * Returns the bucket where the page starts, from the cursor.
+     *
+     * Date-range cursors are made of the index of a bucket and the datastore cursor in it.
+     *
+     * @return the index of the bucket.
+     * @throws IllegalArgumentException when the cursor is invalid.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public int getStartBucket() {
+        if (cursor == null) {
+            return 0;
+        }
+        int separator = cursor.indexOf(':');
+        try {
+            int bucket = Integer.parseInt(cursor.substring(0, Math.max(separator, 0)));
+            if (bucket < 0 || bucket >= getBucketCount()) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return bucket;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Returns the cursor of a date-range page.
+     *
+     * @param bucket the index of the bucket where the next page starts.
+     * @param bucketCursor the datastore cursor in the bucket, null for its start.
+     * @return the nextPageToken.
+     */
+    public static String bucketCursor(int bucket, Cursor bucketCursor) {
+        return bucket + ":" + (bucketCursor == null ? "" : bucketCursor.toWebSafeString());
+    }
+
+    /**
+     * Returns the query of the conferences in the given bucket of the date range, for the
+     * equality filters. The page starts at the cursor when it's in that bucket.
+     *
+     * @param bucket the index of the bucket, from getStartBucket to getBucketCount.
+     * @return an Objectify Query, ordered by name.
+     * @throws IllegalArgumentException when a value or the cursor is invalid.
+     */
+    @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
+    public Query<Conference> getBucketQuery(int bucket) {
+        planFilters();
+        Query<Conference> query = ofy().load().type(Conference.class);
+        if (byWeek()) {
+            query = query.filter("weeks", DateBuckets.weekOf(fromDay()) + bucket);
+        } else {
+            query = query.filter("days", fromDay() + bucket);
+        }
+        for (Filter filter : this.filters) {
+            if (filter.operator.isInequalityFilter()) {
+                continue;
+            }
+            query = query.filter(String.format("%s %s", filter.field.getFieldName(),
+                    filter.operator.getQueryOperator()),
+                    filter.field.fieldType == FieldType.INTEGER
+                            ? Integer.parseInt(filter.value) : filter.value);
+        }
+        query = query.order("name");
+        if (cursor != null && bucket == getStartBucket()) {
+            String bucketCursor = cursor.substring(cursor.indexOf(':') + 1);
+            if (!bucketCursor.isEmpty()) {
+                query = query.startAt(parseCursor(bucketCursor));
+            }
+        }
+        query = query.chunk(Constants.MAX_PAGE_SIZE);
+        LOG.info(query.toString());
+        return query;
+    }
+
+    /**
+     * Returns whether the given result of getBucketQuery belongs to the page.
+     *
+     * Week buckets are wider than the date range, and a conference spanning several buckets is
+     * found in each of them. It's kept only when it overlaps the date range, in the first of its
+     * buckets within the range.
+     *
+     * @param conference a result of the query of the bucket.
+     * @param bucket the index of the bucket.
+     * @return true when the conference satisfies the date range and all the post-filters.
+     */
+    public boolean matches(Conference conference, int bucket) {
+        long startMillis = conference.getStartMillis();
+        if (startMillis == Conference.NO_DATE) {
+            return false;
+        }
+        int startDay = DateBuckets.dayOf(startMillis);
+        int lastDay = DateBuckets.lastDayOf(startMillis, conference.getEndMillis());
+        if (startDay > toDay() || lastDay < fromDay()) {
+            return false;
+        }
+        int firstDay = Math.max(startDay, fromDay());
+        int firstBucket = byWeek()
+                ? DateBuckets.weekOf(firstDay) - DateBuckets.weekOf(fromDay())
+                : firstDay - fromDay();
+        return firstBucket == bucket && matches(conference);
+    }
+
+    /**
+     * Returns whether the query has filters evaluated in memory, set by getQuery.
+     *
+     * @return true when the results of the query must go through matches.
+     */
+    public boolean hasPostFilters() {
+        return !postFilters.isEmpty();
+    }
+
+    /**
+     * Evaluates the post-filters on a result of the query returned by getQuery.
+     *
+     * @param conference a result of the query.
+     * @return true when the conference satisfies all the post-filters.
+     */
+    public boolean matches(Conference conference) {
+        for (Filter filter : postFilters) {
+            boolean passed = filter.matches(conference);
+            FilterSelectivity.record(filter.field, passed);
+            if (!passed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Getter for filters.
      *
@@ -151,27 +516,95 @@ public class ConferenceQueryForm {
      * @return this for method chaining.
      */
     public ConferenceQueryForm filter(Filter filter) {
-        if (filter.operator.isInequalityFilter()) {
-            // Only allows inequality filters on a single field.
-            if (inequalityFilter != null && !inequalityFilter.field.equals(filter.field)) {
-                throw new IllegalArgumentException(
-                        "Inequality filter is allowed on only one field.");
-            }
-            inequalityFilter = filter;
-        }
         filters.add(filter);
         return this;
     }
 
     /**
-     * Returns an Objectify Query object for the specified filters.
+     * Returns the page size, bounded by Constants.MAX_PAGE_SIZE.
+     *
+     * @return the number of conferences in a page.
+     */
+    public int getPageSize() {
+        return pageSize <= 0 ? Constants.DEFAULT_PAGE_SIZE
+                : Math.min(pageSize, Constants.MAX_PAGE_SIZE);
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public Date getFromDate() {
+        return fromDate == null ? null : new Date(fromDate.getTime());
+    }
+
+    public Date getToDate() {
+        return toDate == null ? null : new Date(toDate.getTime());
+    }
+
+    /**
+     * Restricts the query to the conferences taking place on some day of the given range.
+     *
+     * Ranges of up to MAX_DAY_LOOKUPS days are looked up day by day, longer ones week by week,
+     * up to MAX_WEEK_LOOKUPS weeks.
+     *
+     * @param fromDate the first day of the range.
+     * @param toDate the last day of the range, included.
+     * @return this for method chaining.
+     */
+    public ConferenceQueryForm dateRange(Date fromDate, Date toDate) {
+        this.fromDate = fromDate == null ? null : new Date(fromDate.getTime());
+        this.toDate = toDate == null ? null : new Date(toDate.getTime());
+        return this;
+    }
+
+    /**
+     * Sets the page size.
+     *
+     * @param pageSize the maximum number of conferences to return.
+     * @return this for method chaining.
+     */
+    public ConferenceQueryForm pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Sets the cursor where the page starts.
+     *
+     * @param cursor the nextPageToken of the previous page.
+     * @return this for method chaining.
+     */
+    public ConferenceQueryForm cursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * Decodes a cursor sent by the client.
+     *
+     * @param cursor the websafe representation of the cursor.
+     * @return the Cursor.
+     * @throws IllegalArgumentException when the cursor can't be decoded.
+     */
+    public static Cursor parseCursor(String cursor) {
+        try {
+            return Cursor.fromWebSafeString(cursor);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Returns an Objectify Query object for the filters pushed down to the datastore, limited to
+     * one page when there are no post-filters.
      *
      * @return an Objectify Query.
+     * @throws IllegalArgumentException when a value or the cursor is invalid.
      */
     @ApiResourceProperty(ignored = AnnotationBoolean.TRUE)
     public Query<Conference> getQuery() {
-        // First check the feasibility of inequality filters.
-        checkFilters();
+        planFilters();
         Query<Conference> query = ofy().load().type(Conference.class);
         if (inequalityFilter == null) {
             // Order by name.
@@ -182,6 +615,9 @@ public class ConferenceQueryForm {
             query = query.order("name");
         }
         for (Filter filter : this.filters) {
+            if (postFilters.contains(filter)) {
+                continue;
+            }
             // Applies filters in order.
             if (filter.field.fieldType == FieldType.STRING) {
                 query = query.filter(String.format("%s %s", filter.field.getFieldName(),
@@ -191,6 +627,16 @@ public class ConferenceQueryForm {
                         filter.operator.getQueryOperator()), Integer.parseInt(filter.value));
             }
         }
+        if (cursor != null) {
+            query = query.startAt(
+                    parseCursor(cursor.substring(cursor.indexOf(PLAN_SEPARATOR) + 1)));
+        }
+        if (postFilters.isEmpty()) {
+            query = query.limit(getPageSize());
+        } else {
+            // The results are read until the page is full, in batches.
+            query = query.chunk(Constants.MAX_PAGE_SIZE);
+        }
         LOG.info(query.toString());
         return query;
     }
@@ -0,0 +1,24 @@
+package com.google.devrel.training.conference.form;
+
+import java.util.List;
+
+/**
+ * A simple Java object (POJO) representing a bulk import of conferences sent from the client.
+ */
+public class ImportForm {
+
+    /**
+     * The conferences to create, in order.
+     */
+    private List<ConferenceForm> conferences;
+
+    private ImportForm() {}
+
+    public ImportForm(List<ConferenceForm> conferences) {
+        this.conferences = conferences;
+    }
+
+    public List<ConferenceForm> getConferences() {
+        return conferences;
+    }
+}
@@ -0,0 +1,115 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.base.Joiner;
+import com.google.devrel.training.conference.Constants;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.NearlySoldOutIndex;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maintains the announcement of the conferences that are nearly sold out
+ * (defined as having 1 - 4 seats left).
+ *
+ * Every time the seatsAvailable of a Conference is written, the membership of that conference
+ * in the NearlySoldOutIndex is updated, and the announcement in memcache is rebuilt from the
+ * index when it changed.
+ */
+public class Announcements {
+
+    /**
+     * Conferences with fewer seats left than this are nearly sold out.
+     */
+    private static final int NEARLY_SOLD_OUT_SEATS = 5;
+
+    public static boolean isNearlySoldOut(Conference conference) {
+        return conference.getSeatsAvailable() > 0
+                && conference.getSeatsAvailable() < NEARLY_SOLD_OUT_SEATS;
+    }
+
+    /**
+     * Applies the membership delta of the given conference to the index.
+     *
+     * @param conference the Conference whose seats or name may have changed.
+     */
+    public static void update(Conference conference) {
+        final String websafeConferenceKey = conference.getWebsafeKey();
+        final String name = isNearlySoldOut(conference) ? conference.getName() : null;
+        NearlySoldOutIndex index = ofy().load().key(NearlySoldOutIndex.getKey()).now();
+        if (index != null && name == null
+                && !index.getConferenceNames().containsKey(websafeConferenceKey)) {
+            return;
+        }
+        if (index != null && name != null
+                && name.equals(index.getConferenceNames().get(websafeConferenceKey))) {
+            return;
+        }
+        index = ofy().transact(new Work<NearlySoldOutIndex>() {
+            @Override
+            public NearlySoldOutIndex run() {
+                NearlySoldOutIndex index = loadOrBuildIndex();
+                if (index.update(websafeConferenceKey, name)) {
+                    ofy().save().entity(index).now();
+                }
+                return index;
+            }
+        });
+        publish(index);
+    }
+
+    /**
+     * Loads the index, building it with a single scan of the Conference kind the first time.
+     */
+    private static NearlySoldOutIndex loadOrBuildIndex() {
+        NearlySoldOutIndex index = ofy().load().key(NearlySoldOutIndex.getKey()).now();
+        if (index == null) {
+            index = new NearlySoldOutIndex();
+            Iterable<Conference> iterable = ofy().transactionless().load().type(Conference.class)
+                    .filter("seatsAvailable <", NEARLY_SOLD_OUT_SEATS)
+                    .filter("seatsAvailable >", 0);
+            for (Conference conference : iterable) {
+                index.update(conference.getWebsafeKey(), conference.getName());
+            }
+            ofy().save().entity(index).now();
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds the announcement in memcache from the index.
+     */
+    public static void refresh() {
+        NearlySoldOutIndex index = ofy().transact(new Work<NearlySoldOutIndex>() {
+            @Override
+            public NearlySoldOutIndex run() {
+                return loadOrBuildIndex();
+            }
+        });
+        publish(index);
+    }
+
+    private static void publish(NearlySoldOutIndex index) {
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        List<String> conferenceNames = new ArrayList<>(index.getConferenceNames().values());
+        if (conferenceNames.isEmpty()) {
+            memcacheService.delete(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
+            return;
+        }
+        Collections.sort(conferenceNames);
+
+        // Build a String that announces the nearly sold-out conferences
+        StringBuilder announcementStringBuilder = new StringBuilder(
+                "Last chance to attend! The following conferences are nearly sold out: ");
+        Joiner joiner = Joiner.on(", ").skipNulls();
+        announcementStringBuilder.append(joiner.join(conferenceNames));
+        memcacheService.put(Constants.MEMCACHE_ANNOUNCEMENTS_KEY,
+                announcementStringBuilder.toString());
+    }
+}
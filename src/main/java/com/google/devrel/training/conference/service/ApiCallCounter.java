@@ -0,0 +1,206 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.memcache.MemcacheServicePb.MemcacheGetRequest;
+import com.google.appengine.api.memcache.MemcacheServicePb.MemcacheGetResponse;
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.ApiConfig;
+import com.google.apphosting.api.ApiProxy.ApiProxyException;
+import com.google.apphosting.api.ApiProxy.ApplicationException;
+import com.google.apphosting.api.ApiProxy.Delegate;
+import com.google.apphosting.api.ApiProxy.Environment;
+import com.google.apphosting.api.ApiProxy.LogRecord;
+import com.google.devrel.training.conference.service.RequestStats.EndpointStats;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An ApiProxy delegate counting the datastore and memcache calls of the current request in
+ * RequestStats, before handing them to the delegate of the runtime.
+ */
+public class ApiCallCounter implements Delegate<Environment> {
+
+    private static final Logger LOG = Logger.getLogger(ApiCallCounter.class.getName());
+
+    private static final String DATASTORE = "datastore_v3";
+
+    private static final String MEMCACHE = "memcache";
+
+    /**
+     * The error of a Commit that lost to a concurrent transaction, retried by Objectify.
+     */
+    private static final int CONCURRENT_TRANSACTION = 2;
+
+    private final Delegate<Environment> delegate;
+
+    private ApiCallCounter(Delegate<Environment> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Wraps the delegate of the runtime, once.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void install() {
+        Delegate<Environment> delegate = ApiProxy.getDelegate();
+        if (delegate != null && !(delegate instanceof ApiCallCounter)) {
+            ApiProxy.setDelegate(new ApiCallCounter(delegate));
+        }
+    }
+
+    /**
+     * Counts a call as it's made.
+     */
+    private static void countCall(EndpointStats stats, String packageName, String methodName) {
+        if (!DATASTORE.equals(packageName)) {
+            return;
+        }
+        switch (methodName) {
+            case "Get":
+                stats.count(RequestStats.DATASTORE_GETS, 1);
+                break;
+            case "Put":
+                stats.count(RequestStats.DATASTORE_PUTS, 1);
+                break;
+            case "Delete":
+                stats.count(RequestStats.DATASTORE_DELETES, 1);
+                break;
+            case "RunQuery":
+                stats.count(RequestStats.DATASTORE_QUERIES, 1);
+                break;
+            case "Next":
+                stats.count(RequestStats.DATASTORE_NEXTS, 1);
+                break;
+            case "Commit":
+                stats.count(RequestStats.DATASTORE_COMMITS, 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Counts the outcome of a call once it completed.
+     */
+    private static void countResult(EndpointStats stats, String packageName, String methodName,
+            byte[] request, byte[] response) {
+        if (!MEMCACHE.equals(packageName) || !"Get".equals(methodName)) {
+            return;
+        }
+        try {
+            int keys = MemcacheGetRequest.parseFrom(request).getKeyCount();
+            int hits = MemcacheGetResponse.parseFrom(response).getItemCount();
+            stats.count(RequestStats.MEMCACHE_HITS, hits);
+            stats.count(RequestStats.MEMCACHE_MISSES, keys - hits);
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "Failed to count a memcache get", e);
+        }
+    }
+
+    private static void countFailure(EndpointStats stats, String packageName, String methodName,
+            Throwable failure) {
+        if (DATASTORE.equals(packageName) && "Commit".equals(methodName)
+                && failure instanceof ApplicationException
+                && ((ApplicationException) failure).getApplicationError()
+                        == CONCURRENT_TRANSACTION) {
+            stats.count(RequestStats.TRANSACTION_RETRIES, 1);
+        }
+    }
+
+    @Override
+    public byte[] makeSyncCall(Environment environment, String packageName, String methodName,
+            byte[] request) throws ApiProxyException {
+        EndpointStats stats = RequestStats.current();
+        countCall(stats, packageName, methodName);
+        try {
+            byte[] response = delegate.makeSyncCall(environment, packageName, methodName, request);
+            countResult(stats, packageName, methodName, request, response);
+            return response;
+        } catch (ApiProxyException e) {
+            countFailure(stats, packageName, methodName, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Future<byte[]> makeAsyncCall(Environment environment, final String packageName,
+            final String methodName, final byte[] request, ApiConfig apiConfig) {
+        final EndpointStats stats = RequestStats.current();
+        countCall(stats, packageName, methodName);
+        final Future<byte[]> future =
+                delegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+        return new Future<byte[]>() {
+            private final AtomicBoolean counted = new AtomicBoolean();
+
+            private byte[] counted(byte[] response) {
+                if (counted.compareAndSet(false, true)) {
+                    countResult(stats, packageName, methodName, request, response);
+                }
+                return response;
+            }
+
+            private void failed(ExecutionException e) {
+                if (counted.compareAndSet(false, true)) {
+                    countFailure(stats, packageName, methodName, e.getCause());
+                }
+            }
+
+            @Override
+            public byte[] get() throws InterruptedException, ExecutionException {
+                try {
+                    return counted(future.get());
+                } catch (ExecutionException e) {
+                    failed(e);
+                    throw e;
+                }
+            }
+
+            @Override
+            public byte[] get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                try {
+                    return counted(future.get(timeout, unit));
+                } catch (ExecutionException e) {
+                    failed(e);
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return future.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return future.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+        };
+    }
+
+    @Override
+    public void log(Environment environment, LogRecord record) {
+        delegate.log(environment, record);
+    }
+
+    @Override
+    public void flushLogs(Environment environment) {
+        delegate.flushLogs(environment);
+    }
+
+    @Override
+    public List<Thread> getRequestThreads(Environment environment) {
+        return delegate.getRequestThreads(environment);
+    }
+}
@@ -0,0 +1,225 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.googlecode.objectify.Key;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of Conferences, with seatsAvailable refreshed from the seat shards.
+ *
+ * Each conference has a version counter in memcache, incremented after every write to the
+ * conference or to its seats. Cached copies are stamped with the version read before they were
+ * loaded, so a copy loaded before a write never matches the version after it. The first tier is
+ * a bounded cache per instance, the second is memcache, and both are checked against the
+ * current version, which costs a single memcache batch get per request.
+ *
+ * A copy is also never served past MAX_STALENESS_MILLIS after it was loaded, which bounds the
+ * staleness when a version increment is lost. Like the ProfileCache, the cache holds raw
+ * datastore Entities and hands out fresh Conference objects.
+ */
+public class ConferenceCache {
+
+    /**
+     * How long a cached copy may be served, set with the conference.cache.maxStalenessMillis
+     * system property.
+     */
+    public static final long MAX_STALENESS_MILLIS =
+            Long.getLong("conference.cache.maxStalenessMillis", 2000);
+
+    private static final int INSTANCE_MAX_SIZE = 1000;
+
+    private static final String VERSION_PREFIX = "conferenceVersion:";
+
+    private static final String ENTRY_PREFIX = "conference:";
+
+    private static final Cache<String, CachedConference> INSTANCE = CacheBuilder.newBuilder()
+            .maximumSize(INSTANCE_MAX_SIZE)
+            .expireAfterWrite(MAX_STALENESS_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    private static final AtomicLong INSTANCE_HITS = new AtomicLong();
+    private static final AtomicLong MEMCACHE_HITS = new AtomicLong();
+    private static final AtomicLong DATASTORE_LOADS = new AtomicLong();
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    /**
+     * A cached copy of a conference, with the version it was loaded at.
+     */
+    @SuppressWarnings("serial")
+    private static class CachedConference implements Serializable {
+        private final long version;
+        private final long loadedAt;
+        private final Entity entity;
+
+        private CachedConference(long version, long loadedAt, Entity entity) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.entity = entity;
+        }
+
+        private boolean isFresh(Long version, long now) {
+            return version != null && this.version == version
+                    && now - loadedAt < MAX_STALENESS_MILLIS;
+        }
+    }
+
+    private static MemcacheService memcache() {
+        return MemcacheServiceFactory.getMemcacheService();
+    }
+
+    /**
+     * Returns the given conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the Conference with its seatsAvailable, or null when there is none.
+     */
+    public static Conference get(Key<Conference> conferenceKey) {
+        return getAll(Collections.singletonList(conferenceKey)).get(conferenceKey);
+    }
+
+    /**
+     * Returns the given conferences, loading the ones not cached and their shards in one batch
+     * get each.
+     *
+     * @param conferenceKeys the keys of the Conferences.
+     * @return the Conferences by key, in the given order, without the missing ones.
+     */
+    public static Map<Key<Conference>, Conference> getAll(
+            Collection<Key<Conference>> conferenceKeys) {
+        MemcacheService memcache = memcache();
+        List<String> versionKeys = new ArrayList<>(conferenceKeys.size());
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            versionKeys.add(VERSION_PREFIX + conferenceKey.getString());
+        }
+        Map<String, Object> versions = new HashMap<>(memcache.getAll(versionKeys));
+        List<String> missingVersions = new ArrayList<>();
+        for (String versionKey : versionKeys) {
+            if (!versions.containsKey(versionKey)) {
+                missingVersions.add(versionKey);
+            }
+        }
+        if (!missingVersions.isEmpty()) {
+            // Starting from the time, so a counter evicted from memcache never comes back to a
+            // version that is still cached.
+            versions.putAll(memcache.incrementAll(missingVersions, 0, System.currentTimeMillis()));
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Key<Conference>, Entity> found = new HashMap<>();
+        List<String> entryKeys = new ArrayList<>();
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            String websafeKey = conferenceKey.getString();
+            CachedConference cached = INSTANCE.getIfPresent(websafeKey);
+            if (cached != null && cached.isFresh(version(versions, websafeKey), now)) {
+                found.put(conferenceKey, cached.entity);
+                INSTANCE_HITS.incrementAndGet();
+            } else {
+                entryKeys.add(ENTRY_PREFIX + websafeKey);
+            }
+        }
+
+        List<Key<Conference>> misses = new ArrayList<>();
+        if (!entryKeys.isEmpty()) {
+            Map<String, Object> entries = memcache.getAll(entryKeys);
+            for (String entryKey : entryKeys) {
+                String websafeKey = entryKey.substring(ENTRY_PREFIX.length());
+                CachedConference cached = (CachedConference) entries.get(entryKey);
+                Key<Conference> conferenceKey = Key.create(websafeKey);
+                if (cached != null && cached.isFresh(version(versions, websafeKey), now)) {
+                    INSTANCE.put(websafeKey, cached);
+                    found.put(conferenceKey, cached.entity);
+                    MEMCACHE_HITS.incrementAndGet();
+                } else {
+                    misses.add(conferenceKey);
+                }
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            List<Key<SeatShard>> shardKeys = new ArrayList<>();
+            for (Key<Conference> conferenceKey : misses) {
+                shardKeys.addAll(SeatInventory.getShardKeys(conferenceKey));
+            }
+            Map<Key<Conference>, Conference> loaded = ofy().load().keys(misses);
+            Map<Key<SeatShard>, SeatShard> shards =
+                    ofy().transactionless().load().keys(shardKeys);
+            Map<String, CachedConference> puts = new HashMap<>();
+            for (Key<Conference> conferenceKey : misses) {
+                Conference conference = loaded.get(conferenceKey);
+                DATASTORE_LOADS.incrementAndGet();
+                if (conference == null) {
+                    continue;
+                }
+                SeatInventory.refreshSeatsAvailable(conference, shards);
+                String websafeKey = conferenceKey.getString();
+                CachedConference cached = new CachedConference(version(versions, websafeKey),
+                        now, ofy().save().toEntity(conference));
+                INSTANCE.put(websafeKey, cached);
+                puts.put(ENTRY_PREFIX + websafeKey, cached);
+                found.put(conferenceKey, cached.entity);
+            }
+            if (!puts.isEmpty()) {
+                memcache.putAll(puts, Expiration.byDeltaMillis((int) MAX_STALENESS_MILLIS));
+            }
+        }
+
+        Map<Key<Conference>, Conference> result = new LinkedHashMap<>();
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            Entity entity = found.get(conferenceKey);
+            if (entity != null) {
+                result.put(conferenceKey, ofy().load().<Conference>fromEntity(entity));
+            }
+        }
+        return result;
+    }
+
+    private static Long version(Map<String, Object> versions, String websafeKey) {
+        Object version = versions.get(VERSION_PREFIX + websafeKey);
+        return version == null ? null : ((Number) version).longValue();
+    }
+
+    /**
+     * Makes the cached copies of the given conference stale, after a write to it or its seats.
+     *
+     * @param conferenceKey the key of the Conference.
+     */
+    public static void invalidate(Key<Conference> conferenceKey) {
+        String websafeKey = conferenceKey.getString();
+        memcache().increment(VERSION_PREFIX + websafeKey, 1, System.currentTimeMillis());
+        INSTANCE.invalidate(websafeKey);
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    /**
+     * Returns the counters of this instance's cache.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("instanceHits", INSTANCE_HITS.get());
+        stats.put("memcacheHits", MEMCACHE_HITS.get());
+        stats.put("datastoreLoads", DATASTORE_LOADS.get());
+        stats.put("invalidations", INVALIDATIONS.get());
+        return stats;
+    }
+}
@@ -0,0 +1,195 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.factory;
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ImportBatch;
+import com.google.devrel.training.conference.domain.ImportJob;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Result;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk import of conferences, as a chain of tasks importing one ImportBatch each.
+ *
+ * A batch allocates the ids of all its conferences in one call and writes them with batched
+ * puts, then indexes them, enqueues their confirmation e-mails and updates the facet counts a
+ * chunk at a time. Every step is keyed by the job and the batch, so a task that fails midway
+ * can be retried from the start of its batch without duplicating anything.
+ *
+ * The seat shards of the imported conferences are not written, SeatInventory creates them from
+ * maxAttendees the first time they are loaded.
+ */
+public class ConferenceImports {
+
+    /**
+     * The maximum number of records of a job.
+     */
+    public static final int MAX_RECORDS = 5000;
+
+    /**
+     * The number of records imported by one task.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * The number of conferences per put, search index call and e-mail batch.
+     */
+    private static final int CHUNK_SIZE = 100;
+
+    /**
+     * Stores the given records and starts importing them.
+     *
+     * @param organizerUserId the organizer of the conferences.
+     * @param records the conferences to create.
+     * @return the job, for following its progress.
+     * @throws IllegalArgumentException when there are no records or more than MAX_RECORDS.
+     */
+    public static ImportJob start(final String organizerUserId,
+            final List<ConferenceForm> records) {
+        if (records == null || records.isEmpty() || records.size() > MAX_RECORDS) {
+            throw new IllegalArgumentException(
+                    "An import must have between 1 and " + MAX_RECORDS + " conferences.");
+        }
+        final Key<ImportJob> jobKey = factory().allocateId(ImportJob.class);
+        return ofy().transact(new Work<ImportJob>() {
+            @Override
+            public ImportJob run() {
+                int batchCount = (records.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+                ImportJob job = new ImportJob(jobKey.getId(), organizerUserId, records.size(),
+                        batchCount);
+                List<Object> entities = new ArrayList<>(batchCount + 1);
+                entities.add(job);
+                for (int i = 0; i < batchCount; i++) {
+                    entities.add(new ImportBatch(jobKey, i, records.subList(i * BATCH_SIZE,
+                            Math.min(records.size(), (i + 1) * BATCH_SIZE))));
+                }
+                ofy().save().entities(entities).now();
+                QueueFactory.getDefaultQueue().add(ofy().getTransaction(), batchTask(jobKey, 0));
+                return job;
+            }
+        });
+    }
+
+    private static TaskOptions batchTask(Key<ImportJob> jobKey, int batchIndex) {
+        return TaskOptions.Builder.withUrl("/tasks/import_conferences")
+                .param("importJobId", String.valueOf(jobKey.getId()))
+                .param("batch", String.valueOf(batchIndex));
+    }
+
+    /**
+     * Schedules the next batch of the given job, unless it's done or already scheduled.
+     */
+    private static void scheduleNext(ImportJob job) {
+        if (job.isDone()) {
+            return;
+        }
+        try {
+            QueueFactory.getDefaultQueue().add(batchTask(job.getKey(), job.getNextBatch())
+                    .taskName("import-" + job.getId() + "-" + job.getNextBatch()));
+        } catch (TaskAlreadyExistsException e) {
+            // Scheduled by a previous attempt.
+        }
+    }
+
+    /**
+     * Imports the given batch of the given job, then schedules the next one.
+     *
+     * @param jobId the id of the ImportJob.
+     * @param batchIndex the position of the batch in the job.
+     */
+    public static void importBatch(long jobId, final int batchIndex) {
+        final Key<ImportJob> jobKey = Key.create(ImportJob.class, jobId);
+        ImportJob job = ofy().load().key(jobKey).now();
+        if (job == null || batchIndex > job.getNextBatch()) {
+            return;
+        }
+        if (batchIndex < job.getNextBatch()) {
+            // A retry of a batch that was imported, only its successor may be missing.
+            scheduleNext(job);
+            return;
+        }
+        ImportBatch batch = ofy().load().key(ImportBatch.createKey(jobKey, batchIndex)).now();
+        String organizerUserId = job.getOrganizerUserId();
+        Key<Profile> profileKey = Key.create(Profile.class, organizerUserId);
+        Profile organizer = ofy().load().key(profileKey).now();
+        List<ConferenceForm> records = batch.getRecords();
+        if (batch.getFirstConferenceId() == 0) {
+            batch.setFirstConferenceId(factory().allocateIds(profileKey, Conference.class,
+                    records.size()).getRaw().getStart().getId());
+            ofy().save().entity(batch).now();
+        }
+
+        List<Conference> conferences = new ArrayList<>(records.size());
+        final List<String> errors = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                Conference conference = new Conference(batch.getFirstConferenceId() + i,
+                        organizerUserId, records.get(i));
+                conference.attachOrganizer(organizer);
+                conferences.add(conference);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                errors.add("Conference " + (batchIndex * BATCH_SIZE + i) + ": " + e.getMessage());
+            }
+        }
+
+        List<Result<?>> saves = new ArrayList<>();
+        for (int from = 0; from < conferences.size(); from += CHUNK_SIZE) {
+            saves.add(ofy().save().entities(
+                    conferences.subList(from, Math.min(conferences.size(), from + CHUNK_SIZE))));
+        }
+        for (Result<?> save : saves) {
+            save.now();
+        }
+
+        Map<String, Integer> facetDeltas = new HashMap<>();
+        List<String> conferenceInfos = new ArrayList<>(conferences.size());
+        for (Conference conference : conferences) {
+            for (String value : Facets.valuesOf(conference)) {
+                Integer delta = facetDeltas.get(value);
+                facetDeltas.put(value, delta == null ? 1 : delta + 1);
+            }
+            conferenceInfos.add(conference.toString());
+        }
+        for (int from = 0; from < conferences.size(); from += CHUNK_SIZE) {
+            ConferenceSearch.index(
+                    conferences.subList(from, Math.min(conferences.size(), from + CHUNK_SIZE)));
+        }
+        String updateName = "import-" + jobId + "-" + batchIndex;
+        if (!facetDeltas.isEmpty()) {
+            Facets.apply(updateName, facetDeltas);
+        }
+        if (organizer != null && organizer.getMainEmail() != null) {
+            ConfirmationEmails.enqueueAll(updateName, organizer.getMainEmail(), conferenceInfos);
+            ConfirmationEmails.scheduleSend();
+        }
+        QueryCache.invalidate(conferences);
+
+        final int imported = conferences.size();
+        job = ofy().transact(new Work<ImportJob>() {
+            @Override
+            public ImportJob run() {
+                ImportJob job = ofy().load().key(jobKey).now();
+                if (job.getNextBatch() == batchIndex) {
+                    job.completeBatch(imported, errors);
+                    ofy().save().entity(job).now();
+                }
+                return job;
+            }
+        });
+        // The batch is written, don't keep it in the session cache.
+        ofy().clear();
+        scheduleNext(job);
+    }
+}
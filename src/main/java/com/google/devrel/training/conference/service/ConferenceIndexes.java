@@ -0,0 +1,119 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.WaitlistEntry;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The composite indexes of the app, derived from the shapes of the queries it issues.
+ *
+ * The queries of ConferenceQueryForm combine equality filters, at most one inequality filter
+ * and the order by name, so every equality filter gets an index on (field, name) and one on
+ * (field, inequality field, name) per inequality field: the datastore merges them for any
+ * combination of filters instead of needing one index per combination. The bucket queries
+ * merge the (days, name) or (weeks, name) index with those, and the conferences of an
+ * organizer are an ancestor query ordered by name. The other Conference queries, on
+ * seatsAvailable and geoCells, are served by the built-in indexes.
+ *
+ * The waitlist of a conference is read in the order of arrival. The queries on Registration,
+ * an ancestor query and an equality filter without sort orders, need no composite index.
+ *
+ * WEB-INF/datastore-indexes.xml is the output of toXml().
+ */
+public class ConferenceIndexes {
+
+    /**
+     * An index over properties of a kind, all ascending.
+     */
+    public static class CompositeIndex {
+
+        private final String kind;
+
+        private final boolean ancestor;
+
+        private final List<String> properties;
+
+        CompositeIndex(String kind, boolean ancestor, String... properties) {
+            this.kind = kind;
+            this.ancestor = ancestor;
+            this.properties = ImmutableList.copyOf(properties);
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public boolean isAncestor() {
+            return ancestor;
+        }
+
+        public List<String> getProperties() {
+            return properties;
+        }
+
+        @Override
+        public String toString() {
+            return kind + (ancestor ? ",ancestor," : ",") + properties;
+        }
+    }
+
+    private static final String CONFERENCE = Key.getKind(Conference.class);
+
+    private static final String WAITLIST_ENTRY = Key.getKind(WaitlistEntry.class);
+
+    private static final List<CompositeIndex> INDEXES = buildIndexes();
+
+    private static List<CompositeIndex> buildIndexes() {
+        List<CompositeIndex> indexes = new ArrayList<>();
+        for (Field field : Field.values()) {
+            indexes.add(new CompositeIndex(CONFERENCE, false, field.getFieldName(), "name"));
+        }
+        for (Field inequalityField : Field.values()) {
+            for (Field field : Field.values()) {
+                if (field != inequalityField) {
+                    indexes.add(new CompositeIndex(CONFERENCE, false, field.getFieldName(),
+                            inequalityField.getFieldName(), "name"));
+                }
+            }
+        }
+        indexes.add(new CompositeIndex(CONFERENCE, false, "days", "name"));
+        indexes.add(new CompositeIndex(CONFERENCE, false, "weeks", "name"));
+        indexes.add(new CompositeIndex(CONFERENCE, true, "name"));
+        // Waitlists.promote
+        indexes.add(new CompositeIndex(WAITLIST_ENTRY, false, "conferenceKey", "joinedAt"));
+        return Collections.unmodifiableList(indexes);
+    }
+
+    public static List<CompositeIndex> getIndexes() {
+        return INDEXES;
+    }
+
+    /**
+     * Returns the index manifest to deploy.
+     *
+     * @return the content of datastore-indexes.xml.
+     */
+    public static String toXml() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        xml.append("<!-- Generated by ConferenceIndexes.toXml(), see /admin/index_writes. -->\n");
+        xml.append("<datastore-indexes autoGenerate=\"false\">\n");
+        for (CompositeIndex index : INDEXES) {
+            xml.append("    <datastore-index kind=\"").append(index.getKind())
+                    .append("\" ancestor=\"").append(index.isAncestor()).append("\">\n");
+            for (String property : index.getProperties()) {
+                xml.append("        <property name=\"").append(property)
+                        .append("\" direction=\"asc\"/>\n");
+            }
+            xml.append("    </datastore-index>\n");
+        }
+        xml.append("</datastore-indexes>\n");
+        return xml.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.search.Cursor;
+import com.google.appengine.api.search.Document;
+import com.google.appengine.api.search.Field;
+import com.google.appengine.api.search.Index;
+import com.google.appengine.api.search.IndexSpec;
+import com.google.appengine.api.search.MatchScorer;
+import com.google.appengine.api.search.Query;
+import com.google.appengine.api.search.QueryOptions;
+import com.google.appengine.api.search.Results;
+import com.google.appengine.api.search.ScoredDocument;
+import com.google.appengine.api.search.SearchServiceFactory;
+import com.google.appengine.api.search.SortOptions;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.base.Joiner;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Full-text search over the name, description, topics and city of the conferences, backed by
+ * the App Engine Search API.
+ *
+ * Each Conference is a Document named after its websafe key. Besides the searchable fields,
+ * the Document holds every prefix of its words in the "prefixes" field, which is what queries
+ * match, so "kube" finds "Kubernetes". Documents are written by IndexConferenceServlet, from a
+ * task added in the transaction that wrote the Conference.
+ */
+public class ConferenceSearch {
+
+    private static final String INDEX_NAME = "conferences";
+
+    private static final String PREFIXES = "prefixes";
+
+    /**
+     * Words are indexed by their prefixes of at least this many characters.
+     */
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    /**
+     * Longer words are indexed by their prefixes up to this length, and their full form.
+     */
+    private static final int MAX_PREFIX_LENGTH = 20;
+
+    /**
+     * The maximum number of words of a search.
+     */
+    private static final int MAX_QUERY_WORDS = 10;
+
+    /**
+     * How many results the match scorer ranks, the others come in index order.
+     */
+    private static final int SCORED_RESULTS = 1000;
+
+    private static Index index() {
+        return SearchServiceFactory.getSearchService().getIndex(
+                IndexSpec.newBuilder().setName(INDEX_NAME));
+    }
+
+    /**
+     * Adds the indexing of the given conference to the transaction that writes it.
+     *
+     * @param conferenceKey the key of the Conference.
+     */
+    public static void scheduleIndexing(Key<Conference> conferenceKey) {
+        QueueFactory.getDefaultQueue().add(ofy().getTransaction(),
+                TaskOptions.Builder.withUrl("/tasks/index_conference")
+                .param("websafeConferenceKey", conferenceKey.getString()));
+    }
+
+    /**
+     * Splits the given text into lower case words.
+     */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Writes the documents of the given conferences to the index, in one call.
+     *
+     * @param conferences at most 200 conferences.
+     */
+    public static void index(List<Conference> conferences) {
+        List<Document> documents = new ArrayList<>(conferences.size());
+        for (Conference conference : conferences) {
+            documents.add(toDocument(conference));
+        }
+        index().put(documents);
+    }
+
+    private static Document toDocument(Conference conference) {
+        String topics = conference.getTopics() == null
+                ? "" : Joiner.on(' ').join(conference.getTopics());
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String text : new String[] {conference.getName(), conference.getDescription(),
+                topics, conference.getCity()}) {
+            for (String word : words(text)) {
+                int max = Math.min(word.length(), MAX_PREFIX_LENGTH);
+                for (int length = Math.min(MIN_PREFIX_LENGTH, word.length()); length <= max;
+                        length++) {
+                    prefixes.add(word.substring(0, length));
+                }
+                prefixes.add(word);
+            }
+        }
+        return Document.newBuilder()
+                .setId(conference.getWebsafeKey())
+                .addField(Field.newBuilder().setName("name").setText(conference.getName()))
+                .addField(Field.newBuilder().setName("description")
+                        .setText(conference.getDescription()))
+                .addField(Field.newBuilder().setName("topics").setText(topics))
+                .addField(Field.newBuilder().setName("city").setText(conference.getCity()))
+                .addField(Field.newBuilder().setName(PREFIXES)
+                        .setText(Joiner.on(' ').join(prefixes)))
+                .build();
+    }
+
+    /**
+     * Removes the document of the given conference from the index.
+     *
+     * @param websafeConferenceKey the websafe key of the Conference.
+     */
+    public static void remove(String websafeConferenceKey) {
+        index().delete(websafeConferenceKey);
+    }
+
+    /**
+     * Returns a page of the conferences matching every word of the given search, best first.
+     *
+     * @param search the words to look for, each matching words starting with it.
+     * @param pageSize the maximum number of conferences.
+     * @param cursor the cursor returned with the previous page, or null for the first one.
+     * @return the page of conferences, loaded in one batch get.
+     * @throws IllegalArgumentException when the search has no words or the cursor is invalid.
+     */
+    public static ConferencePage search(String search, int pageSize, String cursor) {
+        List<String> words = words(search);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("The search has no words.");
+        }
+        StringBuilder queryString = new StringBuilder();
+        for (String word : words.subList(0, Math.min(words.size(), MAX_QUERY_WORDS))) {
+            if (queryString.length() > 0) {
+                queryString.append(' ');
+            }
+            queryString.append(PREFIXES).append(':')
+                    .append(word.length() > MAX_PREFIX_LENGTH
+                            ? word.substring(0, MAX_PREFIX_LENGTH) : word);
+        }
+        Cursor searchCursor;
+        try {
+            searchCursor = cursor == null
+                    ? Cursor.newBuilder().build() : Cursor.newBuilder().build(cursor);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        Query query = Query.newBuilder()
+                .setOptions(QueryOptions.newBuilder()
+                        .setLimit(pageSize)
+                        .setCursor(searchCursor)
+                        .setReturningIdsOnly(true)
+                        .setSortOptions(SortOptions.newBuilder()
+                                .setMatchScorer(MatchScorer.newBuilder())
+                                .setLimit(SCORED_RESULTS)))
+                .build(queryString.toString());
+        Results<ScoredDocument> results = index().search(query);
+
+        List<Key<Conference>> conferenceKeys = new ArrayList<>(pageSize);
+        for (ScoredDocument document : results) {
+            conferenceKeys.add(Key.<Conference>create(document.getId()));
+        }
+        Map<Key<Conference>, Conference> conferences = ofy().load().keys(conferenceKeys);
+        List<Conference> items = new ArrayList<>(conferenceKeys.size());
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            Conference conference = conferences.get(conferenceKey);
+            if (conference != null) {
+                items.add(conference);
+            }
+        }
+        Cursor next = results.getCursor();
+        return ConferenceSnapshots.page(items, next == null ? null : next.toWebSafeString());
+    }
+}
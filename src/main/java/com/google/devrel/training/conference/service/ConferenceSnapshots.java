@@ -0,0 +1,36 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.google.devrel.training.conference.domain.ConferenceSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders the pages of list responses as ConferenceSnapshots.
+ *
+ * A page is rendered once, when its conferences are read, and the QueryCache then serves the
+ * same snapshots to every response until a write to one of the conferences invalidates it.
+ * The display names of the organizers are rendered too, saveProfile invalidates the cached
+ * pages when one of them changes.
+ */
+public class ConferenceSnapshots {
+
+    /**
+     * Hydrates the organizers of the given conferences and renders them.
+     *
+     * @param conferences the Conferences of the page, in order.
+     * @param nextPageToken the cursor of the next page, null when this is the last page.
+     * @return the page of snapshots.
+     */
+    public static ConferencePage page(List<Conference> conferences, String nextPageToken) {
+        // To avoid separate datastore gets for each Conference, fetch the Profiles in one batch.
+        OrganizerHydrator.hydrate(conferences);
+        List<ConferenceSnapshot> items = new ArrayList<>(conferences.size());
+        for (Conference conference : conferences) {
+            items.add(new ConferenceSnapshot(conference));
+        }
+        return new ConferencePage(items, nextPageToken);
+    }
+}
@@ -0,0 +1,318 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.utils.SystemProperty;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pipeline of the confirmation e-mails sent when a conference is created, or when a seat is
+ * booked for a user on its waitlist.
+ *
+ * Each e-mail is a task in the "confirmation-email" pull queue, added in the transaction that
+ * creates the conference or books the seat. A named push task per time window runs SendConfirmationEmailServlet,
+ * which leases the pending e-mails in batches and sends them through one shared mail Session.
+ * An e-mail that fails to send is leased again after an exponential backoff, without holding
+ * back the rest of the batch, by a drain scheduled for when it is due, and is dropped after
+ * MAX_ATTEMPTS.
+ */
+public class ConfirmationEmails {
+
+    private static final Logger LOG = Logger.getLogger(ConfirmationEmails.class.getName());
+
+    private static final String QUEUE_NAME = "confirmation-email";
+
+    /**
+     * How long a kick waits for more e-mails before draining the queue.
+     */
+    private static final long KICK_DELAY_MILLIS = 5000;
+
+    /**
+     * The maximum number of e-mails leased at once.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of batches a kick sends before scheduling the next one.
+     */
+    private static final int MAX_BATCHES = 20;
+
+    /**
+     * The maximum number of tasks added to a queue in one call.
+     */
+    private static final int MAX_TASKS_PER_ADD = 100;
+
+    private static final long LEASE_SECONDS = 60;
+
+    private static final long MIN_BACKOFF_SECONDS = 10;
+
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    private static final int MAX_ATTEMPTS = 8;
+
+    /**
+     * Sends a single message, the seam for a fake transport when measuring the pipeline.
+     */
+    public interface MailTransport {
+        void send(Message message) throws MessagingException;
+    }
+
+    /**
+     * Sends the messages with the App Engine Mail service.
+     */
+    public static final MailTransport MAIL_SERVICE = new MailTransport() {
+        @Override
+        public void send(Message message) throws MessagingException {
+            Transport.send(message);
+        }
+    };
+
+    /**
+     * Drops the messages, for measuring the throughput of the pipeline alone.
+     */
+    public static final MailTransport FAKE = new MailTransport() {
+        @Override
+        public void send(Message message) throws MessagingException {
+            message.saveChanges();
+        }
+    };
+
+    private static volatile MailTransport transport =
+            "fake".equals(System.getProperty("conference.mail.transport")) ? FAKE : MAIL_SERVICE;
+
+    private static final Session SESSION = Session.getInstance(System.getProperties(), null);
+
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong RETRIED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong SEND_MILLIS = new AtomicLong();
+
+    public static void setTransport(MailTransport transport) {
+        ConfirmationEmails.transport = transport;
+    }
+
+    private static Queue queue() {
+        return QueueFactory.getQueue(QUEUE_NAME);
+    }
+
+    /**
+     * Adds the confirmation e-mail of a new conference to the pull queue.
+     *
+     * @param transaction the transaction creating the conference.
+     * @param email the e-mail address of the organizer.
+     * @param conferenceInfo the description of the conference.
+     */
+    public static void enqueue(Transaction transaction, String email, String conferenceInfo) {
+        queue().add(transaction, TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+                .param("email", email)
+                .param("conferenceInfo", conferenceInfo));
+    }
+
+    /**
+     * Adds an e-mail with the given subject and text to the pull queue.
+     *
+     * @param transaction the transaction the e-mail confirms.
+     * @param email the e-mail address of the recipient.
+     * @param subject the subject of the e-mail.
+     * @param text the text of the e-mail.
+     */
+    public static void enqueue(Transaction transaction, String email, String subject,
+            String text) {
+        queue().add(transaction, TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+                .param("email", email)
+                .param("subject", subject)
+                .param("text", text));
+    }
+
+    /**
+     * Adds the confirmation e-mails of new conferences to the pull queue, a batch at a time.
+     *
+     * The tasks are named after the given prefix and their position, so adding the same e-mails
+     * again, as a retried import does, doesn't send them twice.
+     *
+     * @param taskNamePrefix the prefix of the task names, unique to the caller.
+     * @param email the e-mail address of the organizer.
+     * @param conferenceInfos the descriptions of the conferences.
+     */
+    public static void enqueueAll(String taskNamePrefix, String email,
+            List<String> conferenceInfos) {
+        List<TaskOptions> tasks = new ArrayList<>(MAX_TASKS_PER_ADD);
+        for (int i = 0; i < conferenceInfos.size(); i++) {
+            tasks.add(TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+                    .taskName(taskNamePrefix + "-" + i)
+                    .param("email", email)
+                    .param("conferenceInfo", conferenceInfos.get(i)));
+            if (tasks.size() == MAX_TASKS_PER_ADD || i == conferenceInfos.size() - 1) {
+                try {
+                    queue().add(tasks);
+                } catch (TaskAlreadyExistsException e) {
+                    // Added by a previous attempt, the other tasks of the batch were added.
+                }
+                tasks.clear();
+            }
+        }
+    }
+
+    /**
+     * Schedules a drain of the pull queue, once per time window.
+     *
+     * Must be called after the transactions adding e-mails committed.
+     */
+    public static void scheduleSend() {
+        scheduleDrain("email-", System.currentTimeMillis(), KICK_DELAY_MILLIS);
+    }
+
+    /**
+     * Schedules a drain for when the e-mails leased again after a failure are due, once per
+     * time window. The names differ from the ones of scheduleSend, so a retry falling in the
+     * current window doesn't hold back the kick of the e-mails added meanwhile.
+     */
+    private static void scheduleRetry(long backoffSeconds) {
+        long delayMillis = TimeUnit.SECONDS.toMillis(backoffSeconds);
+        scheduleDrain("email-retry-", System.currentTimeMillis() + delayMillis, delayMillis);
+    }
+
+    private static void scheduleDrain(String namePrefix, long windowMillis, long delayMillis) {
+        try {
+            QueueFactory.getDefaultQueue().add(
+                    TaskOptions.Builder.withUrl("/tasks/send_confirmation_email")
+                    .taskName(namePrefix + windowMillis / KICK_DELAY_MILLIS)
+                    .countdownMillis(delayMillis));
+        } catch (TaskAlreadyExistsException e) {
+            // A drain is already scheduled for this window.
+        }
+    }
+
+    /**
+     * Leases and sends the pending e-mails, up to MAX_BATCHES batches.
+     *
+     * When e-mails failed and were leased again, and no further batch was left to send, a drain
+     * is scheduled for when the earliest of them is due, so they don't wait for the next
+     * e-mail to be added.
+     *
+     * @return the number of e-mails sent.
+     */
+    public static int sendPending() {
+        Queue queue = queue();
+        int sent = 0;
+        long minBackoffSeconds = Long.MAX_VALUE;
+        for (int batch = 0; batch < MAX_BATCHES; batch++) {
+            List<TaskHandle> tasks = queue.leaseTasks(LEASE_SECONDS, TimeUnit.SECONDS, BATCH_SIZE);
+            List<TaskHandle> done = new ArrayList<>(tasks.size());
+            for (TaskHandle task : tasks) {
+                if (send(task)) {
+                    sent++;
+                    done.add(task);
+                } else if (task.getRetryCount() + 1 >= MAX_ATTEMPTS) {
+                    FAILED.incrementAndGet();
+                    done.add(task);
+                } else {
+                    RETRIED.incrementAndGet();
+                    long backoffSeconds = backoffSeconds(task.getRetryCount());
+                    queue.modifyTaskLease(task, backoffSeconds, TimeUnit.SECONDS);
+                    minBackoffSeconds = Math.min(minBackoffSeconds, backoffSeconds);
+                }
+            }
+            if (!done.isEmpty()) {
+                queue.deleteTask(done);
+            }
+            if (tasks.size() < BATCH_SIZE) {
+                if (minBackoffSeconds != Long.MAX_VALUE) {
+                    scheduleRetry(minBackoffSeconds);
+                }
+                return sent;
+            }
+        }
+        // More e-mails may be waiting, the next drain also picks up the retries.
+        scheduleSend();
+        return sent;
+    }
+
+    private static long backoffSeconds(int attempt) {
+        return Math.min(MAX_BACKOFF_SECONDS, MIN_BACKOFF_SECONDS << Math.min(attempt, 20));
+    }
+
+    /**
+     * Sends the e-mail of the given task.
+     *
+     * @return true when the e-mail was sent or can never be, false when it should be retried.
+     */
+    private static boolean send(TaskHandle task) {
+        String email = null;
+        String conferenceInfo = null;
+        String subject = "You created a new Conference!";
+        String body = null;
+        try {
+            for (Map.Entry<String, String> param : task.extractParams()) {
+                if ("email".equals(param.getKey())) {
+                    email = param.getValue();
+                } else if ("conferenceInfo".equals(param.getKey())) {
+                    conferenceInfo = param.getValue();
+                } else if ("subject".equals(param.getKey())) {
+                    subject = param.getValue();
+                } else if ("text".equals(param.getKey())) {
+                    body = param.getValue();
+                }
+            }
+        } catch (UnsupportedEncodingException | UnsupportedOperationException e) {
+            LOG.log(Level.WARNING, "Dropping a malformed e-mail task " + task.getName(), e);
+            FAILED.incrementAndGet();
+            return true;
+        }
+        if (body == null) {
+            body = "Hi, you have created a following conference.\n" + conferenceInfo;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Message message = new MimeMessage(SESSION);
+            InternetAddress from = new InternetAddress(
+                    String.format("noreply@%s.appspotmail.com",
+                            SystemProperty.applicationId.get()), "Conference Central");
+            message.setFrom(from);
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(email, ""));
+            message.setSubject(subject);
+            message.setText(body);
+            transport.send(message);
+            SENT.incrementAndGet();
+            return true;
+        } catch (MessagingException | UnsupportedEncodingException e) {
+            LOG.log(Level.WARNING, String.format("Failed to send an mail to %s", email), e);
+            return false;
+        } finally {
+            SEND_MILLIS.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Returns the delivery counters of this instance.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("sent", SENT.get());
+        stats.put("retried", RETRIED.get());
+        stats.put("failed", FAILED.get());
+        stats.put("sendMillis", SEND_MILLIS.get());
+        return stats;
+    }
+}
@@ -0,0 +1,225 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.Constants;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetCounts;
+import com.google.devrel.training.conference.domain.FacetShard;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the number of conferences per topic, city and starting month.
+ *
+ * The transactions that write a conference enqueue the delta of its facet values, and a task
+ * adds it to one of the FacetShards. The sum of the shards is cached in memcache until the next
+ * delta is applied.
+ */
+public class Facets {
+
+    private static final String TOPIC = "topic:";
+    private static final String CITY = "city:";
+    private static final String MONTH = "month:";
+
+    /**
+     * How long the counts stay out of memcache after a change, longer than summing them takes.
+     */
+    private static final long INVALIDATION_MILLIS = 5000;
+
+    /**
+     * Returns the facet values of the given conference.
+     *
+     * @param conference the Conference, may be null.
+     * @return the facet values, empty when conference is null.
+     */
+    public static Set<String> valuesOf(Conference conference) {
+        Set<String> values = new LinkedHashSet<>();
+        if (conference == null) {
+            return values;
+        }
+        if (conference.getTopics() != null) {
+            for (String topic : conference.getTopics()) {
+                values.add(TOPIC + topic);
+            }
+        }
+        if (conference.getCity() != null) {
+            values.add(CITY + conference.getCity());
+        }
+        if (conference.getMonth() != 0) {
+            values.add(MONTH + conference.getMonth());
+        }
+        return values;
+    }
+
+    /**
+     * Adds the update of the counts to the transaction that writes the given conference.
+     *
+     * @param previousValues the facet values of the conference before the transaction.
+     * @param conference the Conference as written by the transaction.
+     */
+    public static void scheduleUpdate(Set<String> previousValues, Conference conference) {
+        Set<String> values = valuesOf(conference);
+        TaskOptions task = TaskOptions.Builder.withUrl("/tasks/update_facets");
+        boolean changed = false;
+        for (String value : previousValues) {
+            if (!values.contains(value)) {
+                task.param(value, "-1");
+                changed = true;
+            }
+        }
+        for (String value : values) {
+            if (!previousValues.contains(value)) {
+                task.param(value, "1");
+                changed = true;
+            }
+        }
+        if (changed) {
+            QueueFactory.getDefaultQueue().add(ofy().getTransaction(), task);
+        }
+    }
+
+    /**
+     * Applies the given deltas once, however many times the task that carries them is retried.
+     *
+     * @param updateName the name of the task, which picks the shard.
+     * @param deltas the deltas, by facet value.
+     */
+    public static void apply(final String updateName, final Map<String, Integer> deltas) {
+        final int shardIndex = Math.abs(updateName.hashCode() % FacetShard.SHARD_COUNT);
+        final Key<FacetShard> shardKey = FacetShard.createKey(shardIndex);
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                FacetShard shard = ofy().load().key(shardKey).now();
+                if (shard == null) {
+                    shard = new FacetShard(shardIndex);
+                }
+                if (shard.apply(updateName, deltas)) {
+                    ofy().save().entity(shard).now();
+                }
+            }
+        });
+        invalidate();
+    }
+
+    /**
+     * Recounts the facet values with a scan of the Conference kind.
+     *
+     * Deltas applied during the scan may be counted twice or not at all, so this is meant for
+     * the first deployment and for repairs.
+     */
+    public static void rebuild() {
+        final Map<String, Long> counts = new HashMap<>();
+        for (Conference conference : ofy().load().type(Conference.class)
+                .chunk(Constants.MAX_PAGE_SIZE)) {
+            for (String value : valuesOf(conference)) {
+                Long count = counts.get(value);
+                counts.put(value, count == null ? 1 : count + 1);
+            }
+        }
+        // A transaction may only span a few entity groups, so each shard is reset in its own.
+        for (int i = 0; i < FacetShard.SHARD_COUNT; i++) {
+            final int shardIndex = i;
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    FacetShard shard = ofy().load().key(FacetShard.createKey(shardIndex)).now();
+                    if (shard == null) {
+                        shard = new FacetShard(shardIndex);
+                    }
+                    shard.reset(shardIndex == 0 ? counts
+                            : Collections.<String, Long>emptyMap());
+                    ofy().save().entity(shard).now();
+                }
+            });
+        }
+        invalidate();
+    }
+
+    /**
+     * Returns the counts, from memcache when they haven't changed since they were last summed.
+     *
+     * @return the counts of every facet value.
+     */
+    public static FacetCounts get() {
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        FacetCounts facetCounts = (FacetCounts) memcacheService.get(Constants.MEMCACHE_FACETS_KEY);
+        if (facetCounts != null) {
+            return facetCounts;
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (FacetShard shard : ofy().load().keys(shardKeys()).values()) {
+            for (Map.Entry<String, Long> count : shard.getCounts().entrySet()) {
+                Long sum = counts.get(count.getKey());
+                counts.put(count.getKey(), (sum == null ? 0 : sum) + count.getValue());
+            }
+        }
+        facetCounts = new FacetCounts();
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            String value = count.getKey();
+            if (count.getValue() <= 0) {
+                continue;
+            }
+            if (value.startsWith(TOPIC)) {
+                facetCounts.getTopics().add(
+                        new FacetCounts.Count(value.substring(TOPIC.length()), count.getValue()));
+            } else if (value.startsWith(CITY)) {
+                facetCounts.getCities().add(
+                        new FacetCounts.Count(value.substring(CITY.length()), count.getValue()));
+            } else if (value.startsWith(MONTH)) {
+                facetCounts.getMonths().add(
+                        new FacetCounts.Count(value.substring(MONTH.length()), count.getValue()));
+            }
+        }
+        sort(facetCounts.getTopics());
+        sort(facetCounts.getCities());
+        sort(facetCounts.getMonths());
+        // Adding only when absent, which fails while the counts are locked by invalidate().
+        memcacheService.put(Constants.MEMCACHE_FACETS_KEY, facetCounts, null,
+                MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+        return facetCounts;
+    }
+
+    /**
+     * Deletes the cached counts, locking them against being added back for a moment, so counts
+     * summed before the change can't replace them.
+     */
+    private static void invalidate() {
+        MemcacheServiceFactory.getMemcacheService().delete(Constants.MEMCACHE_FACETS_KEY,
+                INVALIDATION_MILLIS);
+    }
+
+    private static List<Key<FacetShard>> shardKeys() {
+        List<Key<FacetShard>> keys = new ArrayList<>(FacetShard.SHARD_COUNT);
+        for (int i = 0; i < FacetShard.SHARD_COUNT; i++) {
+            keys.add(FacetShard.createKey(i));
+        }
+        return keys;
+    }
+
+    private static void sort(List<FacetCounts.Count> counts) {
+        Collections.sort(counts, new Comparator<FacetCounts.Count>() {
+            @Override
+            public int compare(FacetCounts.Count a, FacetCounts.Count b) {
+                if (a.getCount() != b.getCount()) {
+                    return a.getCount() > b.getCount() ? -1 : 1;
+                }
+                return a.getValue().compareTo(b.getValue());
+            }
+        });
+    }
+}
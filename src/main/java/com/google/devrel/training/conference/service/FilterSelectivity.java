@@ -0,0 +1,79 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Observed selectivity of the inequality filters evaluated in memory, by field.
+ *
+ * ConferenceQueryForm pushes down to the datastore the inequality field whose filters let the
+ * fewest conferences through, so that the fewest conferences are read and discarded.
+ */
+public class FilterSelectivity {
+
+    /**
+     * The pass rate of the fields that weren't evaluated often enough.
+     */
+    private static final double DEFAULT_PASS_RATE = 0.5;
+
+    private static final long MIN_SAMPLES = 100;
+
+    /**
+     * The counters are halved past this many evaluations, so that old queries weigh less.
+     */
+    private static final long MAX_SAMPLES = 1 << 20;
+
+    private static final AtomicLongArray EVALUATED = new AtomicLongArray(Field.values().length);
+
+    private static final AtomicLongArray PASSED = new AtomicLongArray(Field.values().length);
+
+    /**
+     * Records the outcome of the evaluation of a filter on the given field.
+     *
+     * @param field the field of the filter.
+     * @param passed whether the conference satisfied the filter.
+     */
+    public static void record(Field field, boolean passed) {
+        int i = field.ordinal();
+        long evaluated = EVALUATED.incrementAndGet(i);
+        if (passed) {
+            PASSED.incrementAndGet(i);
+        }
+        if (evaluated > MAX_SAMPLES) {
+            // Racy, but both counters stay roughly proportional.
+            EVALUATED.set(i, evaluated / 2);
+            PASSED.set(i, PASSED.get(i) / 2);
+        }
+    }
+
+    /**
+     * Returns the observed fraction of conferences satisfying the filters on the given field.
+     *
+     * @param field the field.
+     * @return the pass rate, between 0 and 1.
+     */
+    public static double passRate(Field field) {
+        long evaluated = EVALUATED.get(field.ordinal());
+        if (evaluated < MIN_SAMPLES) {
+            return DEFAULT_PASS_RATE;
+        }
+        return Math.min(1.0, (double) PASSED.get(field.ordinal()) / evaluated);
+    }
+
+    /**
+     * Returns the counters of this instance, for checking the plans.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (Field field : Field.values()) {
+            stats.put(field.name() + ".evaluated", EVALUATED.get(field.ordinal()));
+            stats.put(field.name() + ".passed", PASSED.get(field.ordinal()));
+        }
+        return stats;
+    }
+}
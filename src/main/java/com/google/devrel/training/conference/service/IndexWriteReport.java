@@ -0,0 +1,136 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.devrel.training.conference.service.ConferenceIndexes.CompositeIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Counts the index rows written by a put of an entity.
+ *
+ * Every indexed value has an ascending and a descending row in the built-in indexes, the entity
+ * has one row in the kind index, and each composite index has a row per combination of the
+ * values of its properties, times the length of the key path for ancestor indexes. A put writes
+ * the rows of the new version that the previous version didn't have and deletes the ones it
+ * doesn't have anymore.
+ */
+public class IndexWriteReport {
+
+    /**
+     * The name of the count of all the rows, next to the counts per property and index.
+     */
+    public static final String TOTAL = "total";
+
+    /**
+     * Returns the index rows written and deleted by the put of the given entity.
+     *
+     * @param previous the stored version of the entity, null when there is none.
+     * @param entity the entity put.
+     * @return the number of rows by property name or composite index, and the TOTAL.
+     */
+    public static Map<String, Integer> indexWrites(Entity previous, Entity entity) {
+        Map<String, Set<String>> before = previous == null
+                ? Collections.<String, Set<String>>emptyMap() : indexRows(previous);
+        Map<String, Set<String>> after = indexRows(entity);
+        Set<String> names = new LinkedHashSet<>(before.keySet());
+        names.addAll(after.keySet());
+
+        Map<String, Integer> writes = new TreeMap<>();
+        int total = 0;
+        for (String name : names) {
+            Set<String> changed = symmetricDifference(before.get(name), after.get(name));
+            if (!changed.isEmpty()) {
+                writes.put(name, changed.size());
+                total += changed.size();
+            }
+        }
+        writes.put(TOTAL, total);
+        return writes;
+    }
+
+    private static Set<String> symmetricDifference(Set<String> before, Set<String> after) {
+        Set<String> changed = new HashSet<>();
+        if (before != null) {
+            changed.addAll(before);
+        }
+        if (after != null) {
+            for (String row : after) {
+                if (!changed.remove(row)) {
+                    changed.add(row);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the index rows of the given entity, by property name or composite index.
+     */
+    private static Map<String, Set<String>> indexRows(Entity entity) {
+        Map<String, Set<String>> rows = new TreeMap<>();
+        rows.put("kind", Collections.singleton(entity.getKind()));
+        for (String property : entity.getProperties().keySet()) {
+            Set<String> propertyRows = new HashSet<>();
+            for (String value : indexedValues(entity, property)) {
+                propertyRows.add("asc:" + value);
+                propertyRows.add("desc:" + value);
+            }
+            if (!propertyRows.isEmpty()) {
+                rows.put(property, propertyRows);
+            }
+        }
+        for (CompositeIndex index : ConferenceIndexes.getIndexes()) {
+            if (!index.getKind().equals(entity.getKind())) {
+                continue;
+            }
+            List<String> combinations = Collections.singletonList("");
+            if (index.isAncestor()) {
+                combinations = new ArrayList<>();
+                for (Key key = entity.getKey(); key != null; key = key.getParent()) {
+                    combinations.add(key.toString());
+                }
+            }
+            for (String property : index.getProperties()) {
+                List<String> extended = new ArrayList<>();
+                for (String combination : combinations) {
+                    for (String value : indexedValues(entity, property)) {
+                        extended.add(combination + "|" + value);
+                    }
+                }
+                combinations = extended;
+            }
+            if (!combinations.isEmpty()) {
+                rows.put(index.toString(), new HashSet<>(combinations));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the distinct indexed values of the given property, none when it's unindexed.
+     */
+    private static Set<String> indexedValues(Entity entity, String property) {
+        if (!entity.hasProperty(property) || entity.isUnindexedProperty(property)) {
+            return Collections.emptySet();
+        }
+        Object value = entity.getProperty(property);
+        Set<String> values = new HashSet<>();
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                values.add(String.valueOf(element));
+            }
+        } else {
+            values.add(String.valueOf(value));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,81 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.devrel.training.conference.Constants;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.GeoCells;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Proximity queries over the geohash cells of the conferences.
+ *
+ * A query looks up at most 9 cells, sized after the radius, then keeps the conferences within
+ * the radius, so its cost depends on the density of conferences around the point rather than
+ * on the size of the catalog.
+ */
+public class NearbyConferences {
+
+    /**
+     * The largest radius, the cells of larger ones would hold too many conferences.
+     */
+    public static final double MAX_RADIUS_KM = 500;
+
+    /**
+     * Returns the conferences within the given radius of the given point, the closest first.
+     *
+     * At most Constants.MAX_SCANNED_PER_PAGE conferences are read from the cells, the closest
+     * cells first, so in very dense areas the conferences of the farthest cells may be missing.
+     *
+     * @param latitude the latitude of the point, in degrees.
+     * @param longitude the longitude of the point, in degrees.
+     * @param radiusKm the radius, in kilometers.
+     * @param limit the maximum number of conferences.
+     * @return the conferences, by increasing distance.
+     * @throws IllegalArgumentException when the coordinates or the radius are invalid.
+     */
+    public static List<Conference> find(final double latitude, final double longitude,
+            double radiusKm, int limit) {
+        if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", "
+                    + longitude);
+        }
+        if (!(radiusKm > 0 && radiusKm <= MAX_RADIUS_KM)) {
+            throw new IllegalArgumentException(
+                    "The radius must be between 0 and " + MAX_RADIUS_KM + " km.");
+        }
+        final Map<Conference, Double> distances = new LinkedHashMap<>();
+        int scanned = 0;
+        for (String cell : GeoCells.coveringCells(latitude, longitude, radiusKm)) {
+            int remaining = Constants.MAX_SCANNED_PER_PAGE - scanned;
+            if (remaining <= 0) {
+                break;
+            }
+            for (Conference conference : ofy().load().type(Conference.class)
+                    .filter("geoCells", cell)
+                    .limit(remaining)
+                    .chunk(Constants.MAX_PAGE_SIZE)) {
+                scanned++;
+                double distance = GeoCells.distanceKm(latitude, longitude,
+                        conference.getLatitude(), conference.getLongitude());
+                if (distance <= radiusKm) {
+                    distances.put(conference, distance);
+                }
+            }
+        }
+        List<Conference> conferences = new ArrayList<>(distances.keySet());
+        Collections.sort(conferences, new Comparator<Conference>() {
+            @Override
+            public int compare(Conference a, Conference b) {
+                return Double.compare(distances.get(a), distances.get(b));
+            }
+        });
+        return conferences.subList(0, Math.min(limit, conferences.size()));
+    }
+}
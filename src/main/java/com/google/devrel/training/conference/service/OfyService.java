@@ -2,7 +2,14 @@ package com.google.devrel.training.conference.service;
 
 import com.google.devrel.training.conference.domain.AppEngineUser;
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetShard;
+import com.google.devrel.training.conference.domain.ImportBatch;
+import com.google.devrel.training.conference.domain.ImportJob;
+import com.google.devrel.training.conference.domain.NearlySoldOutIndex;
 import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.domain.WaitlistEntry;
 import com.googlecode.objectify.Objectify;
 import com.googlecode.objectify.ObjectifyFactory;
 import com.googlecode.objectify.ObjectifyService;
@@ -15,9 +22,16 @@ public class OfyService {
      * This static block ensure the entity registration.
      */
     static {
-    	//factory().register(AppEngineUser.class);
+        factory().register(AppEngineUser.class);
         factory().register(Conference.class);
         factory().register(Profile.class);
+        factory().register(SeatShard.class);
+        factory().register(NearlySoldOutIndex.class);
+        factory().register(Registration.class);
+        factory().register(FacetShard.class);
+        factory().register(WaitlistEntry.class);
+        factory().register(ImportJob.class);
+        factory().register(ImportBatch.class);
     }
 
     /**
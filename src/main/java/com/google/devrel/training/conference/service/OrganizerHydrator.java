@@ -0,0 +1,52 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attaches the organizer's display name to Conferences before they are returned by the API.
+ *
+ * The organizer Profiles of a whole result page are read through the ProfileCache in one batch,
+ * instead of one get per Conference while the response is serialized.
+ */
+public class OrganizerHydrator {
+
+    /**
+     * Fetches the distinct organizer Profiles of the given conferences in one batch and attaches
+     * their display names.
+     *
+     * @param conferences the Conferences to hydrate.
+     * @return the same Conferences, for method chaining.
+     */
+    public static <C extends Collection<Conference>> C hydrate(C conferences) {
+        Set<String> organizerUserIds = new LinkedHashSet<>();
+        for (Conference conference : conferences) {
+            organizerUserIds.add(conference.getOrganizerUserId());
+        }
+        if (organizerUserIds.isEmpty()) {
+            return conferences;
+        }
+        // Profiles not in the ProfileCache are fetched in a single batch get.
+        Map<String, Profile> organizers = ProfileCache.getAll(organizerUserIds);
+        for (Conference conference : conferences) {
+            conference.attachOrganizer(organizers.get(conference.getOrganizerUserId()));
+        }
+        return conferences;
+    }
+
+    /**
+     * Attaches the organizer's display name to a single conference.
+     *
+     * @param conference the Conference to hydrate.
+     * @return the same Conference, for method chaining.
+     */
+    public static Conference hydrate(Conference conference) {
+        conference.attachOrganizer(ProfileCache.get(conference.getOrganizerUserId()));
+        return conference;
+    }
+}
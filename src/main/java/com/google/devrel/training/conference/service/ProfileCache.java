@@ -0,0 +1,250 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devrel.training.conference.domain.Profile;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of Profiles for non-transactional reads.
+ *
+ * The first tier is scoped to the current request, opened and closed by RequestScopeFilter, so
+ * a request loads a Profile at most once. The second tier is a bounded cache shared by the
+ * requests of this instance, written through by saveProfile and the registration paths. It
+ * holds raw datastore Entities and hands out fresh Profile objects, so requests never share
+ * mutable state. Other instances' writes are visible after at most INSTANCE_TTL_SECONDS.
+ *
+ * Transactions must keep loading the Profile from the datastore, they only write it through
+ * with put() once committed.
+ */
+public class ProfileCache {
+
+    private static final int INSTANCE_MAX_SIZE = 10000;
+
+    private static final int INSTANCE_TTL_SECONDS = 30;
+
+    private static final Cache<String, Entity> INSTANCE = CacheBuilder.newBuilder()
+            .maximumSize(INSTANCE_MAX_SIZE)
+            .expireAfterWrite(INSTANCE_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private static final ThreadLocal<RequestScope> SCOPE = new ThreadLocal<>();
+
+    /**
+     * Counters by endpoint: requestHits, instanceHits and datastoreLoads.
+     */
+    private static final ConcurrentMap<String, AtomicLong[]> STATS = new ConcurrentHashMap<>();
+
+    private static final int REQUEST_HITS = 0;
+    private static final int INSTANCE_HITS = 1;
+    private static final int DATASTORE_LOADS = 2;
+
+    private static final String NO_ENDPOINT = "none";
+
+    /**
+     * The Profiles loaded by the current request, null values standing for missing Profiles.
+     */
+    private static class RequestScope {
+        private final String endpoint;
+        private final Map<String, Profile> profiles = new HashMap<>();
+
+        /**
+         * The batch gets issued by prefetch() and not joined yet, by userId.
+         */
+        private final Map<String, Map<Key<Profile>, Profile>> pending = new HashMap<>();
+
+        private RequestScope(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    /**
+     * Opens the request scope of the current thread.
+     *
+     * @param endpoint the name of the endpoint or servlet serving the request, for the counters.
+     */
+    public static void beginRequest(String endpoint) {
+        SCOPE.set(new RequestScope(endpoint));
+    }
+
+    /**
+     * Closes the request scope of the current thread.
+     */
+    public static void endRequest() {
+        SCOPE.remove();
+    }
+
+    private static void count(int counter, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        RequestScope scope = SCOPE.get();
+        String endpoint = scope == null ? NO_ENDPOINT : scope.endpoint;
+        AtomicLong[] counters = STATS.get(endpoint);
+        if (counters == null) {
+            counters = new AtomicLong[] {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+            AtomicLong[] existing = STATS.putIfAbsent(endpoint, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        counters[counter].addAndGet(delta);
+    }
+
+    /**
+     * Returns the Profile of the given user.
+     *
+     * @param userId the id of the user.
+     * @return the Profile, or null when the user doesn't have one.
+     */
+    public static Profile get(String userId) {
+        List<String> userIds = new ArrayList<>(1);
+        userIds.add(userId);
+        return getAll(userIds).get(userId);
+    }
+
+    /**
+     * Starts loading the Profiles of the given users that aren't cached, without waiting for
+     * them, so the batch get overlaps with the other loads of the request. The next get() or
+     * getAll() for these users joins it.
+     *
+     * Outside of a request scope, does nothing.
+     *
+     * @param userIds the ids of the users.
+     */
+    public static void prefetch(Collection<String> userIds) {
+        RequestScope scope = SCOPE.get();
+        if (scope == null) {
+            return;
+        }
+        List<Key<Profile>> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            if (!scope.profiles.containsKey(userId) && !scope.pending.containsKey(userId)
+                    && INSTANCE.getIfPresent(userId) == null) {
+                missing.add(Key.create(Profile.class, userId));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        // Objectify issues the batch get now and fills the map when it's first read.
+        Map<Key<Profile>, Profile> loading = ofy().load().keys(missing);
+        for (Key<Profile> key : missing) {
+            scope.pending.put(key.getName(), loading);
+        }
+    }
+
+    /**
+     * Returns the Profiles of the given users, loading the ones not cached in one batch get.
+     *
+     * @param userIds the ids of the users.
+     * @return the Profiles by userId, without the users that don't have one.
+     */
+    public static Map<String, Profile> getAll(Collection<String> userIds) {
+        RequestScope scope = SCOPE.get();
+        Map<String, Profile> result = new LinkedHashMap<>();
+        List<Key<Profile>> missing = new ArrayList<>();
+        int requestHits = 0;
+        int instanceHits = 0;
+        int prefetched = 0;
+        for (String userId : userIds) {
+            if (result.containsKey(userId)) {
+                continue;
+            }
+            if (scope != null && scope.profiles.containsKey(userId)) {
+                result.put(userId, scope.profiles.get(userId));
+                requestHits++;
+                continue;
+            }
+            if (scope != null && scope.pending.containsKey(userId)) {
+                Profile profile = scope.pending.remove(userId)
+                        .get(Key.create(Profile.class, userId));
+                result.put(userId, profile);
+                scope.profiles.put(userId, profile);
+                if (profile != null) {
+                    INSTANCE.put(userId, ofy().save().toEntity(profile));
+                }
+                prefetched++;
+                continue;
+            }
+            Entity entity = INSTANCE.getIfPresent(userId);
+            if (entity != null) {
+                Profile profile = ofy().load().fromEntity(entity);
+                result.put(userId, profile);
+                instanceHits++;
+                if (scope != null) {
+                    scope.profiles.put(userId, profile);
+                }
+                continue;
+            }
+            result.put(userId, null);
+            missing.add(Key.create(Profile.class, userId));
+        }
+        if (!missing.isEmpty()) {
+            Map<Key<Profile>, Profile> loaded = ofy().load().keys(missing);
+            for (Key<Profile> key : missing) {
+                Profile profile = loaded.get(key);
+                result.put(key.getName(), profile);
+                if (scope != null) {
+                    scope.profiles.put(key.getName(), profile);
+                }
+                if (profile != null) {
+                    INSTANCE.put(key.getName(), ofy().save().toEntity(profile));
+                }
+            }
+        }
+        count(REQUEST_HITS, requestHits);
+        count(INSTANCE_HITS, instanceHits);
+        count(DATASTORE_LOADS, missing.size() + prefetched);
+        for (String userId : new ArrayList<>(result.keySet())) {
+            if (result.get(userId) == null) {
+                result.remove(userId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given Profile through both tiers, after it has been saved.
+     *
+     * @param profile the saved Profile.
+     */
+    public static void put(Profile profile) {
+        RequestScope scope = SCOPE.get();
+        if (scope != null) {
+            scope.profiles.put(profile.getUserId(), profile);
+            scope.pending.remove(profile.getUserId());
+        }
+        INSTANCE.put(profile.getUserId(), ofy().save().toEntity(profile));
+    }
+
+    /**
+     * Returns the counters of this instance by endpoint, for measuring the loads avoided.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong[]> entry : STATS.entrySet()) {
+            AtomicLong[] counters = entry.getValue();
+            stats.put(entry.getKey() + ".requestHits", counters[REQUEST_HITS].get());
+            stats.put(entry.getKey() + ".instanceHits", counters[INSTANCE_HITS].get());
+            stats.put(entry.getKey() + ".datastoreLoads", counters[DATASTORE_LOADS].get());
+        }
+        return stats;
+    }
+}
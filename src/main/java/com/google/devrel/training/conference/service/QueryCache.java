@@ -0,0 +1,351 @@
+package com.google.devrel.training.conference.service;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.FieldType;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-tier cache of queryConferences pages: an LRU cache in the instance, backed by memcache.
+ *
+ * Entries are keyed on the canonical form of the filters, the page size and the cursor. Each
+ * filter set depends on a single tag: its first equality filter ("CITY=London"), else its
+ * inequality field ("MONTH"), else "*". A tag has a version in memcache that is part of the
+ * cache key, so bumping it invalidates every entry depending on it on all the instances at once.
+ * Writes to a Conference bump only the tags its old and new values can match.
+ *
+ * Every page also renders the display names of the organizers, so every key also holds the
+ * version of the ORGANIZERS_TAG, bumped when a display name changes. Both versions are read with
+ * one memcache call.
+ *
+ * The pages hold immutable ConferenceSnapshots, so the instance tier keeps them deserialized
+ * and serves the same page to every response.
+ */
+public class QueryCache {
+
+    private static final Logger LOG = Logger.getLogger(QueryCache.class.getName());
+
+    private static final String KEY_PREFIX = "queryCache:";
+
+    private static final String TAG_PREFIX = "queryCacheTag:";
+
+    private static final String ALL_TAG = "*";
+
+    /**
+     * The tag of the organizer display names, which any page can hold.
+     */
+    private static final String ORGANIZERS_TAG = "organizers";
+
+    /**
+     * The maximum number of bytes held by the in-instance tier.
+     */
+    private static final long LOCAL_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final int LOCAL_TTL_SECONDS = 60;
+
+    private static final int MEMCACHE_TTL_SECONDS = 600;
+
+    /**
+     * A page in the instance tier, with the size of its serialized form.
+     */
+    private static class LocalPage {
+
+        private final ConferencePage page;
+
+        private final int size;
+
+        LocalPage(ConferencePage page, int size) {
+            this.page = page;
+            this.size = size;
+        }
+    }
+
+    private static final Cache<String, LocalPage> LOCAL = CacheBuilder.newBuilder()
+            .maximumWeight(LOCAL_MAX_BYTES)
+            .weigher(new Weigher<String, LocalPage>() {
+                @Override
+                public int weigh(String key, LocalPage value) {
+                    return key.length() + value.size;
+                }
+            })
+            .expireAfterWrite(LOCAL_TTL_SECONDS, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+
+    private static final AtomicLong LOCAL_HITS = new AtomicLong();
+    private static final AtomicLong MEMCACHE_HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    private static final Comparator<Filter> FILTER_ORDER = new Comparator<Filter>() {
+        @Override
+        public int compare(Filter a, Filter b) {
+            int result = a.getField().compareTo(b.getField());
+            if (result == 0) {
+                result = a.getOperator().compareTo(b.getOperator());
+            }
+            if (result == 0) {
+                result = String.valueOf(a.getValue()).compareTo(String.valueOf(b.getValue()));
+            }
+            return result;
+        }
+    };
+
+    private static MemcacheService memcache() {
+        return MemcacheServiceFactory.getMemcacheService();
+    }
+
+    /**
+     * Returns the filters of the form in canonical order.
+     */
+    private static List<Filter> canonicalFilters(ConferenceQueryForm form) {
+        List<Filter> filters = new ArrayList<>(form.getFilters());
+        Collections.sort(filters, FILTER_ORDER);
+        return filters;
+    }
+
+    /**
+     * Returns the tag the results of the given filters depend on.
+     */
+    private static String dependencyTag(List<Filter> filters) {
+        for (Filter filter : filters) {
+            if (filter.getOperator() == Operator.EQ) {
+                return equalityTag(filter.getField(), filter.getValue());
+            }
+        }
+        // Without equality filters, all the filters are inequalities. Writes bump the tags of
+        // every field, so any of them will do.
+        return filters.isEmpty() ? ALL_TAG : filters.get(0).getField().name();
+    }
+
+    private static String equalityTag(Field field, Object value) {
+        if (field.getFieldType() == FieldType.INTEGER && value instanceof String) {
+            // Filter values are sent as strings, "06" and 6 must map to the same tag.
+            try {
+                value = Integer.parseInt((String) value);
+            } catch (NumberFormatException e) {
+                // Such a filter fails when the query runs, the tag doesn't matter.
+            }
+        }
+        return field.name() + "=" + value;
+    }
+
+    /**
+     * Returns the current versions of the tags, creating those memcache doesn't have.
+     *
+     * A missing version starts at the current time, so that entries cached under the version
+     * memcache evicted are never read again.
+     */
+    private static Map<String, Long> versions(String... tags) {
+        List<String> keys = new ArrayList<>(tags.length);
+        for (String tag : tags) {
+            keys.add(TAG_PREFIX + tag);
+        }
+        Map<String, Object> found = new HashMap<>(memcache().getAll(keys));
+        if (found.size() < keys.size()) {
+            Map<String, Long> missing = new LinkedHashMap<>();
+            for (String key : keys) {
+                if (!found.containsKey(key)) {
+                    missing.put(key, System.currentTimeMillis());
+                }
+            }
+            memcache().putAll(missing, null, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+            found.putAll(memcache().getAll(missing.keySet()));
+        }
+        Map<String, Long> versions = new LinkedHashMap<>();
+        for (String tag : tags) {
+            Object version = found.get(TAG_PREFIX + tag);
+            versions.put(tag, version == null ? 0 : (Long) version);
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the cache key of the given form, under the current version of its tag.
+     *
+     * The key must be computed before the query runs, so that the page of a query that ran
+     * concurrently with a write is cached under an already invalidated version.
+     *
+     * @param form the query form.
+     * @return the cache key.
+     */
+    public static String cacheKey(ConferenceQueryForm form) {
+        List<Filter> filters = canonicalFilters(form);
+        String tag = dependencyTag(filters);
+        Map<String, Long> versions = versions(tag, ORGANIZERS_TAG);
+        StringBuilder key = new StringBuilder(KEY_PREFIX).append(tag).append('@')
+                .append(versions.get(tag)).append('|').append(ORGANIZERS_TAG).append('@')
+                .append(versions.get(ORGANIZERS_TAG));
+        for (Filter filter : filters) {
+            key.append('|').append(filter.getField()).append(' ').append(filter.getOperator())
+                    .append(' ').append(filter.getValue());
+        }
+        if (form.hasDateRange()) {
+            key.append("|from=").append(time(form.getFromDate()))
+                    .append("|to=").append(time(form.getToDate()));
+        }
+        key.append("|size=").append(form.getPageSize());
+        if (form.getCursor() != null) {
+            key.append("|cursor=").append(form.getCursor());
+        }
+        return key.toString();
+    }
+
+    private static String time(Date date) {
+        return date == null ? "" : String.valueOf(date.getTime());
+    }
+
+    /**
+     * Returns the cached page of results for the given cache key.
+     *
+     * @param key the cache key returned by cacheKey.
+     * @return the cached page, or null when it isn't cached.
+     */
+    public static ConferencePage get(String key) {
+        LocalPage local = LOCAL.getIfPresent(key);
+        if (local != null) {
+            LOCAL_HITS.incrementAndGet();
+            return local.page;
+        }
+        byte[] bytes = (byte[]) memcache().get(key);
+        ConferencePage page = bytes == null ? null : deserialize(bytes);
+        if (page != null) {
+            MEMCACHE_HITS.incrementAndGet();
+            LOCAL.put(key, new LocalPage(page, bytes.length));
+            return page;
+        }
+        MISSES.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the page of results in both tiers.
+     *
+     * @param key the cache key returned by cacheKey before the query ran.
+     * @param page the page of results, never modified afterwards.
+     */
+    public static void put(String key, ConferencePage page) {
+        byte[] bytes = serialize(page);
+        LOCAL.put(key, new LocalPage(page, bytes.length));
+        memcache().put(key, bytes, Expiration.byDeltaSeconds(MEMCACHE_TTL_SECONDS));
+    }
+
+    /**
+     * Invalidates the cached pages that the given conference could appear in, before or after
+     * a write.
+     *
+     * @param before the conference before the write, null when it's created or when the write
+     *               didn't change the filtered properties.
+     * @param after the conference after the write.
+     */
+    public static void invalidate(Conference before, Conference after) {
+        invalidate(Arrays.asList(before, after));
+    }
+
+    /**
+     * Invalidates the cached pages that any of the given conferences could appear in, with a
+     * single batch of memcache increments.
+     *
+     * @param conferences the conferences written, nulls are skipped.
+     */
+    public static void invalidate(Collection<Conference> conferences) {
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(ALL_TAG);
+        for (Conference conference : conferences) {
+            if (conference == null) {
+                continue;
+            }
+            for (Field field : Field.values()) {
+                tags.add(field.name());
+                for (Object value : field.valuesOf(conference)) {
+                    tags.add(equalityTag(field, value));
+                }
+            }
+        }
+        List<String> keys = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            keys.add(TAG_PREFIX + tag);
+        }
+        memcache().incrementAll(keys, 1, System.currentTimeMillis());
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    /**
+     * Invalidates every cached page, for a change of the display name of an organizer, which
+     * any of them may render.
+     */
+    public static void invalidateOrganizers() {
+        memcache().increment(TAG_PREFIX + ORGANIZERS_TAG, 1, System.currentTimeMillis());
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    private static byte[] serialize(ConferencePage page) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(page);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ConferencePage deserialize(byte[] bytes) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return (ConferencePage) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            LOG.log(Level.WARNING, "Failed to read a cached page", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the counters of this instance's cache, for sizing it.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("localHits", LOCAL_HITS.get());
+        stats.put("memcacheHits", MEMCACHE_HITS.get());
+        stats.put("misses", MISSES.get());
+        stats.put("localEvictions", LOCAL.stats().evictionCount());
+        stats.put("localSize", LOCAL.size());
+        stats.put("invalidations", INVALIDATIONS.get());
+        return stats;
+    }
+}
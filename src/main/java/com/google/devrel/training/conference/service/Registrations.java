@@ -0,0 +1,153 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registrations of the users for the conferences.
+ *
+ * Registrations used to be a list of websafe keys in the Profile. Profiles still holding one are
+ * migrated to Registration entities the first time they're registered, unregistered or listed.
+ */
+public class Registrations {
+
+    /**
+     * The maximum number of entities per batch put.
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Moves the legacy conference keys of the given Profile to Registration entities.
+     *
+     * Must run in a transaction on the Profile, which the caller saves when this returns true.
+     *
+     * @param profile the Profile loaded in the transaction.
+     * @return true when the Profile changed.
+     */
+    public static boolean migrate(Profile profile) {
+        List<String> websafeConferenceKeys = profile.takeLegacyConferenceKeys();
+        if (websafeConferenceKeys.isEmpty()) {
+            return false;
+        }
+        List<Registration> registrations = new ArrayList<>(MAX_BATCH_SIZE);
+        for (String websafeConferenceKey : websafeConferenceKeys) {
+            registrations.add(new Registration(profile.getUserId(), websafeConferenceKey));
+            if (registrations.size() == MAX_BATCH_SIZE) {
+                ofy().save().entities(registrations).now();
+                registrations.clear();
+            }
+        }
+        ofy().save().entities(registrations).now();
+        return true;
+    }
+
+    /**
+     * Migrates the legacy conference keys of the given user, in a transaction of its own.
+     *
+     * @param userId the id of the user.
+     */
+    public static void migrate(final String userId) {
+        Profile migrated = ofy().transact(new Work<Profile>() {
+            @Override
+            public Profile run() {
+                Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                if (profile == null || !migrate(profile)) {
+                    return null;
+                }
+                ofy().save().entity(profile).now();
+                return profile;
+            }
+        });
+        if (migrated != null) {
+            ProfileCache.put(migrated);
+        }
+    }
+
+    /**
+     * Returns whether the given user is registered for the given conference.
+     *
+     * @param userId the id of the user.
+     * @param websafeConferenceKey the websafe key of the conference.
+     * @return true when there is a Registration.
+     */
+    public static boolean isRegistered(String userId, String websafeConferenceKey) {
+        return ofy().load().key(Registration.createKey(userId, websafeConferenceKey)).now()
+                != null;
+    }
+
+    /**
+     * Returns a page of the conferences the given user is registered for.
+     *
+     * @param userId the id of the user.
+     * @param pageSize the maximum number of conferences.
+     * @param cursor the cursor returned with the previous page, or null for the first one.
+     * @return the page of conferences, from the ConferenceCache.
+     * @throws IllegalArgumentException when the cursor is invalid.
+     */
+    public static ConferencePage listConferences(String userId, int pageSize, String cursor) {
+        Query<Registration> query = ofy().load().type(Registration.class)
+                .ancestor(Key.create(Profile.class, userId))
+                .limit(pageSize);
+        if (cursor != null) {
+            query = query.startAt(ConferenceQueryForm.parseCursor(cursor));
+        }
+        List<Key<Conference>> conferenceKeys = new ArrayList<>(pageSize);
+        QueryResultIterator<Registration> iterator = query.iterator();
+        while (iterator.hasNext()) {
+            conferenceKeys.add(iterator.next().getConferenceKey());
+        }
+        String nextPageToken = null;
+        if (conferenceKeys.size() == pageSize) {
+            Cursor next = iterator.getCursor();
+            nextPageToken = next == null ? null : next.toWebSafeString();
+        }
+        // The organizers are the parents of the conference keys, their Profiles are loaded
+        // along with the conferences for the hydration that follows.
+        Set<String> organizerUserIds = new LinkedHashSet<>();
+        for (Key<Conference> conferenceKey : conferenceKeys) {
+            organizerUserIds.add(conferenceKey.getParent().getName());
+        }
+        ProfileCache.prefetch(organizerUserIds);
+        List<Conference> conferences =
+                new ArrayList<>(ConferenceCache.getAll(conferenceKeys).values());
+        return ConferenceSnapshots.page(conferences, nextPageToken);
+    }
+
+    /**
+     * Returns the query of the registrations for the given conference, ordered by key.
+     *
+     * The parent of each Registration key is the Profile of the attendee, so the query can be
+     * run keys only.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @param pageSize the maximum number of registrations.
+     * @param cursor the cursor returned with the previous page, or null for the first one.
+     * @return the query.
+     * @throws IllegalArgumentException when the cursor is invalid.
+     */
+    public static Query<Registration> attendeesQuery(Key<Conference> conferenceKey, int pageSize,
+            String cursor) {
+        Query<Registration> query = ofy().load().type(Registration.class)
+                .filter("conferenceKey", conferenceKey)
+                .limit(pageSize);
+        if (cursor != null) {
+            query = query.startAt(ConferenceQueryForm.parseCursor(cursor));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,169 @@
+package com.google.devrel.training.conference.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and RPC counters of the requests of this instance, by endpoint.
+ *
+ * RequestScopeFilter times every request and binds its endpoint to the current thread, so that
+ * the datastore and memcache calls counted by ApiCallCounter are attributed to it. Recording
+ * only increments atomic counters, there are no locks on the request path.
+ */
+public class RequestStats {
+
+    /**
+     * The upper bounds, in milliseconds, of the buckets of the latency histograms. The last
+     * bucket holds the slower requests.
+     */
+    private static final long[] BUCKET_MILLIS =
+            {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    public static final int DATASTORE_GETS = 0;
+    public static final int DATASTORE_PUTS = 1;
+    public static final int DATASTORE_DELETES = 2;
+    public static final int DATASTORE_QUERIES = 3;
+    public static final int DATASTORE_NEXTS = 4;
+    public static final int DATASTORE_COMMITS = 5;
+    public static final int MEMCACHE_HITS = 6;
+    public static final int MEMCACHE_MISSES = 7;
+    public static final int TRANSACTION_RETRIES = 8;
+
+    private static final String[] COUNTER_NAMES = {"datastoreGets", "datastorePuts",
+            "datastoreDeletes", "datastoreQueries", "datastoreNexts", "datastoreCommits",
+            "memcacheHits", "memcacheMisses", "transactionRetries"};
+
+    private static final String NO_ENDPOINT = "none";
+
+    private static final ConcurrentMap<String, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<EndpointStats> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The counters of one endpoint.
+     */
+    public static class EndpointStats {
+        private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+        private final AtomicLongArray latency = new AtomicLongArray(2);
+
+        private static final int TOTAL_MILLIS = 0;
+        private static final int MAX_MILLIS = 1;
+
+        public void count(int counter, long delta) {
+            counters.addAndGet(counter, delta);
+        }
+
+        private void record(long millis) {
+            int bucket = 0;
+            while (bucket < BUCKET_MILLIS.length && millis > BUCKET_MILLIS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+            latency.addAndGet(TOTAL_MILLIS, millis);
+            long max = latency.get(MAX_MILLIS);
+            while (millis > max && !latency.compareAndSet(MAX_MILLIS, max, millis)) {
+                max = latency.get(MAX_MILLIS);
+            }
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile of the requests,
+         * capped at the slowest request.
+         */
+        private long percentile(long requests, int percent) {
+            long rank = (requests * percent + 99) / 100;
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_MILLIS.length; bucket++) {
+                seen += histogram.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(BUCKET_MILLIS[bucket], latency.get(MAX_MILLIS));
+                }
+            }
+            return latency.get(MAX_MILLIS);
+        }
+    }
+
+    private static EndpointStats forEndpoint(String endpoint) {
+        EndpointStats stats = STATS.get(endpoint);
+        if (stats == null) {
+            stats = new EndpointStats();
+            EndpointStats existing = STATS.putIfAbsent(endpoint, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Attributes the calls made by the current thread to the given endpoint.
+     *
+     * @param endpoint the name of the endpoint or servlet serving the request.
+     */
+    public static void beginRequest(String endpoint) {
+        CURRENT.set(forEndpoint(endpoint));
+    }
+
+    /**
+     * Records the latency of the request of the current thread and closes its scope.
+     *
+     * @param millis the time spent serving the request.
+     */
+    public static void endRequest(long millis) {
+        EndpointStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.record(millis);
+        }
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the counters of the endpoint served by the current thread.
+     *
+     * @return the counters, those of no endpoint outside of requests.
+     */
+    public static EndpointStats current() {
+        EndpointStats stats = CURRENT.get();
+        return stats == null ? forEndpoint(NO_ENDPOINT) : stats;
+    }
+
+    /**
+     * Increments the given counter of the endpoint served by the current thread.
+     *
+     * @param counter one of the counter constants, e.g. TRANSACTION_RETRIES.
+     */
+    public static void count(int counter) {
+        current().count(counter, 1);
+    }
+
+    /**
+     * Returns the counters of this instance by endpoint.
+     *
+     * @return the counters, by name.
+     */
+    public static Map<String, Long> getStats() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointStats> entry : STATS.entrySet()) {
+            String prefix = entry.getKey() + ".";
+            EndpointStats stats = entry.getValue();
+            long requests = 0;
+            for (int bucket = 0; bucket < stats.histogram.length(); bucket++) {
+                requests += stats.histogram.get(bucket);
+            }
+            result.put(prefix + "requests", requests);
+            result.put(prefix + "totalMillis", stats.latency.get(EndpointStats.TOTAL_MILLIS));
+            result.put(prefix + "p50Millis", stats.percentile(requests, 50));
+            result.put(prefix + "p90Millis", stats.percentile(requests, 90));
+            result.put(prefix + "p99Millis", stats.percentile(requests, 99));
+            result.put(prefix + "maxMillis", stats.latency.get(EndpointStats.MAX_MILLIS));
+            for (int counter = 0; counter < COUNTER_NAMES.length; counter++) {
+                result.put(prefix + COUNTER_NAMES[counter], stats.counters.get(counter));
+            }
+        }
+        return result;
+    }
+}
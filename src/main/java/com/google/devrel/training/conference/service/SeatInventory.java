@@ -0,0 +1,317 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Sharded seat inventory of the conferences.
+ *
+ * The seats of a Conference are split across SHARD_COUNT SeatShard entities, each in its own
+ * entity group. A registration books a seat from one shard picked at random, so concurrent
+ * registrations for the same conference rarely touch the same entity group. A shard never goes
+ * below zero seats and the capacities of the shards add up to maxAttendees, so the conference
+ * can't be overbooked.
+ *
+ * The seatsAvailable property of the Conference entity is a denormalized copy of the total,
+ * written back asynchronously by SyncSeatsAvailableServlet.
+ */
+public class SeatInventory {
+
+    private static final Logger LOG = Logger.getLogger(SeatInventory.class.getName());
+
+    /**
+     * The number of shards per conference.
+     */
+    public static final int SHARD_COUNT = 20;
+
+    /**
+     * How long a scheduled write-back waits for more seat changes before running.
+     */
+    private static final long SYNC_DELAY_MILLIS = 5000;
+
+    /**
+     * Returns the share of the given number of seats that goes to the given shard.
+     */
+    private static int share(int seats, int shardIndex) {
+        return seats / SHARD_COUNT + (shardIndex < seats % SHARD_COUNT ? 1 : 0);
+    }
+
+    /**
+     * Returns the keys of all the shards of the given conference.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the keys of the shards.
+     */
+    public static List<Key<SeatShard>> getShardKeys(Key<Conference> conferenceKey) {
+        List<Key<SeatShard>> shardKeys = new ArrayList<>(SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shardKeys.add(SeatShard.createKey(conferenceKey, i));
+        }
+        return shardKeys;
+    }
+
+    /**
+     * Creates the shards for a new conference, splitting maxAttendees evenly between them.
+     *
+     * @param conferenceKey the key of the new Conference.
+     * @param maxAttendees the capacity of the conference.
+     * @return the shards, to be saved by the caller.
+     */
+    public static List<SeatShard> createShards(Key<Conference> conferenceKey, int maxAttendees) {
+        List<SeatShard> shards = new ArrayList<>(SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            int capacity = share(maxAttendees, i);
+            shards.add(new SeatShard(conferenceKey, i, capacity, capacity));
+        }
+        return shards;
+    }
+
+    /**
+     * Loads all the shards of the given conference in one batch get.
+     *
+     * Conferences created before the seat inventory was sharded don't have shards yet. Their
+     * missing shards are created from the seat counts stored on the Conference.
+     *
+     * @param conference the Conference.
+     * @return the shards of the conference.
+     */
+    public static List<SeatShard> loadShards(final Conference conference) {
+        return loadShards(conference, prefetchShards(conference.getKey()));
+    }
+
+    /**
+     * Starts the batch get of the shards of the given conference without waiting for it, so it
+     * can overlap with loading the conference itself.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return the shards by key, filled when first read.
+     */
+    public static Map<Key<SeatShard>, SeatShard> prefetchShards(Key<Conference> conferenceKey) {
+        return ofy().transactionless().load().keys(getShardKeys(conferenceKey));
+    }
+
+    /**
+     * Returns the shards of the given conference from a prefetched batch get, creating the
+     * missing ones as loadShards(Conference) does.
+     *
+     * @param conference the Conference.
+     * @param loaded the result of prefetchShards for the conference.
+     * @return the shards of the conference.
+     */
+    public static List<SeatShard> loadShards(final Conference conference,
+            Map<Key<SeatShard>, SeatShard> loaded) {
+        final Key<Conference> conferenceKey = conference.getKey();
+        List<SeatShard> shards = new ArrayList<>(SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            SeatShard shard = loaded.get(SeatShard.createKey(conferenceKey, i));
+            if (shard == null) {
+                shard = createMissingShard(conference, conferenceKey, i);
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private static SeatShard createMissingShard(final Conference conference,
+            final Key<Conference> conferenceKey, final int shardIndex) {
+        return ofy().transactNew(new Work<SeatShard>() {
+            @Override
+            public SeatShard run() {
+                SeatShard shard = ofy().load().key(SeatShard.createKey(conferenceKey, shardIndex))
+                        .now();
+                if (shard == null) {
+                    shard = new SeatShard(conferenceKey, shardIndex,
+                            share(conference.getMaxAttendees(), shardIndex),
+                            share(conference.getSeatsAvailable(), shardIndex));
+                    ofy().save().entity(shard).now();
+                }
+                return shard;
+            }
+        });
+    }
+
+    /**
+     * Returns the total number of seats available in the given shards.
+     *
+     * @param shards the shards of a conference.
+     * @return the number of seats available.
+     */
+    public static int countSeatsAvailable(List<SeatShard> shards) {
+        int seatsAvailable = 0;
+        for (SeatShard shard : shards) {
+            seatsAvailable += shard.getSeatsAvailable();
+        }
+        return seatsAvailable;
+    }
+
+    /**
+     * Refreshes the seatsAvailable of the given conference from its shards.
+     *
+     * @param conference the Conference to refresh.
+     * @return the same Conference, for method chaining.
+     */
+    public static Conference refreshSeatsAvailable(Conference conference) {
+        return refreshSeatsAvailable(conference, prefetchShards(conference.getKey()));
+    }
+
+    /**
+     * Refreshes the seatsAvailable of the given conference from its prefetched shards.
+     *
+     * @param conference the Conference to refresh.
+     * @param loaded the result of prefetchShards for the conference.
+     * @return the same Conference, for method chaining.
+     */
+    public static Conference refreshSeatsAvailable(Conference conference,
+            Map<Key<SeatShard>, SeatShard> loaded) {
+        conference.syncSeatsAvailable(countSeatsAvailable(loadShards(conference, loaded)));
+        return conference;
+    }
+
+    /**
+     * Picks a random shard that still has seats to book.
+     *
+     * @param shards the shards of a conference.
+     * @return the key of the shard, or null if the conference is sold out.
+     */
+    public static Key<SeatShard> pickShardToBook(List<SeatShard> shards) {
+        List<SeatShard> candidates = new ArrayList<>(shards.size());
+        for (SeatShard shard : shards) {
+            if (shard.getSeatsAvailable() > 0) {
+                candidates.add(shard);
+            }
+        }
+        return pickRandom(candidates);
+    }
+
+    /**
+     * Picks a random shard that has room for a seat to be given back.
+     *
+     * @param shards the shards of a conference.
+     * @return the key of the shard, or null if every shard is full.
+     */
+    public static Key<SeatShard> pickShardToGiveBack(List<SeatShard> shards) {
+        List<SeatShard> candidates = new ArrayList<>(shards.size());
+        for (SeatShard shard : shards) {
+            if (shard.getSeatsAvailable() < shard.getCapacity()) {
+                candidates.add(shard);
+            }
+        }
+        return pickRandom(candidates);
+    }
+
+    private static Key<SeatShard> pickRandom(List<SeatShard> candidates) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size())).getKey();
+    }
+
+    /**
+     * Changes the total capacity of the shards of the given conference.
+     *
+     * Each shard is updated in its own transaction. Capacity can only be removed from seats that
+     * aren't allocated; when there aren't enough of them, the removed capacity is given back and
+     * the resize fails.
+     *
+     * @param conference the Conference to resize.
+     * @param maxAttendees the new capacity of the conference.
+     * @return true when the shards now hold exactly maxAttendees seats.
+     */
+    public static boolean resize(Conference conference, int maxAttendees) {
+        List<SeatShard> shards = loadShards(conference);
+        int capacity = 0;
+        for (SeatShard shard : shards) {
+            capacity += shard.getCapacity();
+        }
+        if (maxAttendees > capacity) {
+            addCapacity(shards, maxAttendees - capacity);
+            return true;
+        }
+        int remaining = capacity - maxAttendees;
+        List<SeatShard> shuffled = new ArrayList<>(shards);
+        Collections.shuffle(shuffled, ThreadLocalRandom.current());
+        for (SeatShard shard : shuffled) {
+            if (remaining == 0) {
+                break;
+            }
+            remaining -= removeCapacity(shard.getKey(), remaining);
+        }
+        if (remaining > 0) {
+            LOG.info("Not enough unallocated seats to resize " + conference.getKey()
+                    + " to " + maxAttendees);
+            addCapacity(shards, capacity - maxAttendees - remaining);
+            return false;
+        }
+        return true;
+    }
+
+    private static void addCapacity(List<SeatShard> shards, int seats) {
+        for (SeatShard shard : shards) {
+            final int number = share(seats, shard.getShardIndex());
+            if (number == 0) {
+                continue;
+            }
+            final Key<SeatShard> shardKey = shard.getKey();
+            ofy().transactNew(new Work<Void>() {
+                @Override
+                public Void run() {
+                    SeatShard shard = ofy().load().key(shardKey).now();
+                    shard.addCapacity(number);
+                    ofy().save().entity(shard).now();
+                    return null;
+                }
+            });
+        }
+    }
+
+    private static int removeCapacity(final Key<SeatShard> shardKey, final int seats) {
+        return ofy().transactNew(new Work<Integer>() {
+            @Override
+            public Integer run() {
+                SeatShard shard = ofy().load().key(shardKey).now();
+                int removed = shard.removeCapacity(seats);
+                if (removed > 0) {
+                    ofy().save().entity(shard).now();
+                }
+                return removed;
+            }
+        });
+    }
+
+    /**
+     * Schedules the write-back of the total seatsAvailable to the Conference entity.
+     *
+     * Tasks are named after the conference and a time window, so a burst of registrations
+     * results in a single write to the Conference entity.
+     *
+     * @param conferenceKey the key of the Conference whose seats changed.
+     */
+    public static void scheduleSync(Key<Conference> conferenceKey) {
+        String websafeConferenceKey = conferenceKey.getString();
+        Queue queue = QueueFactory.getDefaultQueue();
+        try {
+            queue.add(TaskOptions.Builder.withUrl("/tasks/sync_seats_available")
+                    .taskName("seats-" + websafeConferenceKey + "-"
+                            + System.currentTimeMillis() / SYNC_DELAY_MILLIS)
+                    .countdownMillis(SYNC_DELAY_MILLIS)
+                    .param("websafeConferenceKey", websafeConferenceKey));
+        } catch (TaskAlreadyExistsException e) {
+            // A write-back is already scheduled for this window.
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.users.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.devrel.training.conference.domain.AppEngineUser;
+import com.googlecode.objectify.Objectify;
+
+import java.util.logging.Logger;
+
+/**
+ * Resolves the userId of Users that Endpoints injects without one.
+ *
+ * The userId is only known to the datastore: storing a User in an entity and reading it back
+ * through a fresh session fills it in. As the mapping from email to userId never changes, it is
+ * kept in a map of this instance and in memcache, and the datastore is only used on a miss.
+ */
+public class UserIdResolver {
+
+    private static final Logger LOG = Logger.getLogger(UserIdResolver.class.getName());
+
+    private static final String MEMCACHE_PREFIX = "userId:";
+
+    private static final int LOCAL_MAX_SIZE = 100000;
+
+    private static final Cache<String, String> LOCAL = CacheBuilder.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .build();
+
+    /**
+     * Returns the userId of the given user.
+     *
+     * @param user the User injected by Endpoints.
+     * @return the userId.
+     */
+    public static String resolve(User user) {
+        String userId = user.getUserId();
+        if (userId != null) {
+            return userId;
+        }
+        String email = user.getEmail();
+        userId = LOCAL.getIfPresent(email);
+        if (userId != null) {
+            return userId;
+        }
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        userId = (String) memcacheService.get(MEMCACHE_PREFIX + email);
+        if (userId == null) {
+            userId = resolveFromDatastore(user);
+            if (userId == null) {
+                return null;
+            }
+            memcacheService.put(MEMCACHE_PREFIX + email, userId);
+        }
+        LOCAL.put(email, userId);
+        return userId;
+    }
+
+    private static String resolveFromDatastore(User user) {
+        LOG.info("userId is null, so trying to obtain it from the datastore.");
+        AppEngineUser appEngineUser = new AppEngineUser(user);
+        // The User may have been stored by an earlier request already.
+        Objectify objectify = ofy().factory().begin();
+        AppEngineUser savedUser = objectify.load().key(appEngineUser.getKey()).now();
+        if (savedUser == null || savedUser.getUser().getUserId() == null) {
+            ofy().save().entity(appEngineUser).now();
+            objectify = ofy().factory().begin();
+            savedUser = objectify.load().key(appEngineUser.getKey()).now();
+        }
+        String userId = savedUser.getUser().getUserId();
+        LOG.info("Obtained the UserId: " + userId);
+        return userId;
+    }
+}
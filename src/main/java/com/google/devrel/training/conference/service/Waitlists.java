@@ -0,0 +1,185 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.domain.WaitlistEntry;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Promotes the users waiting for seats of sold out conferences, in the order they joined.
+ *
+ * Giving back seats or adding capacity schedules a promotion task, which books the seats for
+ * the first WaitlistEntries. Each transaction books up to MAX_PER_TRANSACTION seats from one
+ * shard, turning the entries into Registrations and enqueueing a confirmation e-mail for each.
+ */
+public class Waitlists {
+
+    /**
+     * The number of promotions per transaction. A transaction spans at most 5 entity groups:
+     * the shard and the Profile of each promoted user.
+     */
+    private static final int MAX_PER_TRANSACTION = 4;
+
+    /**
+     * The number of transactions a task runs before scheduling the next one.
+     */
+    private static final int MAX_TRANSACTIONS = 25;
+
+    /**
+     * How long a scheduled promotion waits for more seats before running.
+     */
+    private static final long PROMOTION_DELAY_MILLIS = 1000;
+
+    /**
+     * Schedules the promotion of the waitlist of the given conference, once per time window.
+     *
+     * @param conferenceKey the key of the Conference that may have seats available.
+     */
+    public static void schedulePromotion(Key<Conference> conferenceKey) {
+        String websafeConferenceKey = conferenceKey.getString();
+        try {
+            QueueFactory.getDefaultQueue().add(
+                    TaskOptions.Builder.withUrl("/tasks/promote_waitlist")
+                    .taskName("waitlist-" + websafeConferenceKey + "-"
+                            + System.currentTimeMillis() / PROMOTION_DELAY_MILLIS)
+                    .countdownMillis(PROMOTION_DELAY_MILLIS)
+                    .param("websafeConferenceKey", websafeConferenceKey));
+        } catch (TaskAlreadyExistsException e) {
+            // A promotion is already scheduled for this window.
+        }
+    }
+
+    /**
+     * Returns whether users wait for seats of the given conference. They come before new
+     * registrations, so the seats given back are left to the promotion task.
+     *
+     * @param conferenceKey the key of the Conference.
+     * @return true when the conference has WaitlistEntries.
+     */
+    public static boolean hasWaitingUsers(Key<Conference> conferenceKey) {
+        return ofy().load().type(WaitlistEntry.class)
+                .filter("conferenceKey", conferenceKey)
+                .limit(1)
+                .keys()
+                .first()
+                .now() != null;
+    }
+
+    /**
+     * Books the available seats of the given conference for the first users of its waitlist.
+     *
+     * @param conference the Conference.
+     * @return the number of users promoted.
+     */
+    public static int promote(Conference conference) {
+        Key<Conference> conferenceKey = conference.getKey();
+        // The query is eventually consistent, so it may return entries already handled.
+        Set<Key<WaitlistEntry>> handled = new HashSet<>();
+        int promoted = 0;
+        for (int i = 0; i < MAX_TRANSACTIONS; i++) {
+            SeatShard shard = null;
+            for (SeatShard candidate : SeatInventory.loadShards(conference)) {
+                if (shard == null || candidate.getSeatsAvailable() > shard.getSeatsAvailable()) {
+                    shard = candidate;
+                }
+            }
+            if (shard == null || shard.getSeatsAvailable() == 0) {
+                break;
+            }
+            int limit = Math.min(shard.getSeatsAvailable(), MAX_PER_TRANSACTION);
+            List<Key<WaitlistEntry>> entryKeys = new ArrayList<>(limit);
+            for (Key<WaitlistEntry> entryKey : ofy().load().type(WaitlistEntry.class)
+                    .filter("conferenceKey", conferenceKey)
+                    .order("joinedAt")
+                    .limit(limit + handled.size())
+                    .keys()) {
+                if (entryKeys.size() < limit && !handled.contains(entryKey)) {
+                    entryKeys.add(entryKey);
+                }
+            }
+            if (entryKeys.isEmpty()) {
+                break;
+            }
+            promoted += promote(conference, shard.getKey(), entryKeys, handled);
+            if (i == MAX_TRANSACTIONS - 1) {
+                schedulePromotion(conferenceKey);
+            }
+        }
+        if (promoted > 0) {
+            SeatInventory.scheduleSync(conferenceKey);
+            ConferenceCache.invalidate(conferenceKey);
+            ConfirmationEmails.scheduleSend();
+        }
+        return promoted;
+    }
+
+    /**
+     * Turns the given entries into Registrations with seats of the given shard, in one
+     * transaction. Entries of users who registered in the meantime are just deleted.
+     *
+     * The keys of the entries that are gone once the transaction committed are added to handled.
+     */
+    private static int promote(final Conference conference, final Key<SeatShard> shardKey,
+            final List<Key<WaitlistEntry>> entryKeys, Set<Key<WaitlistEntry>> handled) {
+        final List<Key<WaitlistEntry>> deleted = new ArrayList<>();
+        int promoted = ofy().transact(new Work<Integer>() {
+            @Override
+            public Integer run() {
+                deleted.clear();
+                SeatShard shard = ofy().load().key(shardKey).now();
+                Map<Key<WaitlistEntry>, WaitlistEntry> entries = ofy().load().keys(entryKeys);
+                List<Object> saved = new ArrayList<>();
+                for (Key<WaitlistEntry> entryKey : entryKeys) {
+                    if (shard.getSeatsAvailable() == 0) {
+                        break;
+                    }
+                    WaitlistEntry entry = entries.get(entryKey);
+                    if (entry == null) {
+                        deleted.add(entryKey);
+                        continue;
+                    }
+                    String userId = entry.getProfileKey().getName();
+                    String websafeConferenceKey = entry.getWebsafeConferenceKey();
+                    deleted.add(entryKey);
+                    Profile profile = ofy().load().key(entry.getProfileKey()).now();
+                    if (profile != null
+                            && profile.getConferenceKeysToAttend().contains(websafeConferenceKey)
+                            || Registrations.isRegistered(userId, websafeConferenceKey)) {
+                        continue;
+                    }
+                    shard.bookSeats(1);
+                    saved.add(new Registration(userId, websafeConferenceKey));
+                    if (profile != null && profile.getMainEmail() != null) {
+                        ConfirmationEmails.enqueue(ofy().getTransaction(), profile.getMainEmail(),
+                                "You got a seat!",
+                                "Hi, a seat was booked for you at the following conference.\n"
+                                        + conference.toString());
+                    }
+                }
+                int promoted = saved.size();
+                if (promoted > 0) {
+                    saved.add(shard);
+                    ofy().save().entities(saved).now();
+                }
+                ofy().delete().keys(deleted).now();
+                return promoted;
+            }
+        });
+        handled.addAll(deleted);
+        return promoted;
+    }
+}
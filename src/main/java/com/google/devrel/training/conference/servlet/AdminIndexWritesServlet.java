@@ -0,0 +1,83 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.ConferenceIndexes;
+import com.google.devrel.training.conference.service.IndexWriteReport;
+import com.googlecode.objectify.Key;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A servlet for reporting the index writes per put of a Conference, restricted to admins in
+ * web.xml.
+ *
+ * For the conference with the given websafeConferenceKey, or else for a sample of them, prints
+ * the average index rows written by creating the conference and by the write-back of a seat
+ * count one lower. With the manifest parameter, prints the datastore-indexes.xml to deploy.
+ */
+@SuppressWarnings("serial")
+public class AdminIndexWritesServlet extends HttpServlet {
+
+    private static final int SAMPLE_SIZE = 100;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain");
+        PrintWriter writer = response.getWriter();
+        if (request.getParameter("manifest") != null) {
+            writer.print(ConferenceIndexes.toXml());
+            return;
+        }
+
+        String websafeConferenceKey = request.getParameter("websafeConferenceKey");
+        List<Conference> conferences = websafeConferenceKey == null
+                ? ofy().load().type(Conference.class).limit(SAMPLE_SIZE).list()
+                : Collections.singletonList(
+                        ofy().load().key(Key.<Conference>create(websafeConferenceKey)).now());
+        Map<String, Integer> put = new TreeMap<>();
+        Map<String, Integer> seatSync = new TreeMap<>();
+        int count = 0;
+        for (Conference conference : conferences) {
+            if (conference == null) {
+                continue;
+            }
+            Entity entity = ofy().save().toEntity(conference);
+            add(put, IndexWriteReport.indexWrites(null, entity));
+            Conference synced = ofy().load().fromEntity(entity);
+            synced.syncSeatsAvailable(Math.max(conference.getSeatsAvailable() - 1, 0));
+            add(seatSync, IndexWriteReport.indexWrites(entity, ofy().save().toEntity(synced)));
+            count++;
+        }
+        writer.println("conferences " + count);
+        print(writer, "put.", put, count);
+        print(writer, "seatSync.", seatSync, count);
+    }
+
+    private static void add(Map<String, Integer> sums, Map<String, Integer> writes) {
+        for (Map.Entry<String, Integer> entry : writes.entrySet()) {
+            Integer sum = sums.get(entry.getKey());
+            sums.put(entry.getKey(), (sum == null ? 0 : sum) + entry.getValue());
+        }
+    }
+
+    private static void print(PrintWriter writer, String prefix, Map<String, Integer> sums,
+            int count) {
+        for (Map.Entry<String, Integer> entry : sums.entrySet()) {
+            writer.println(String.format("%s%s %.1f", prefix, entry.getKey(),
+                    (double) entry.getValue() / Math.max(count, 1)));
+        }
+    }
+}
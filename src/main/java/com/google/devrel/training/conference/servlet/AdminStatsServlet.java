@@ -0,0 +1,48 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.ConferenceCache;
+import com.google.devrel.training.conference.service.ConfirmationEmails;
+import com.google.devrel.training.conference.service.FilterSelectivity;
+import com.google.devrel.training.conference.service.ProfileCache;
+import com.google.devrel.training.conference.service.QueryCache;
+import com.google.devrel.training.conference.service.RequestStats;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * A servlet for reading the counters of this instance, restricted to admins in web.xml.
+ */
+@SuppressWarnings("serial")
+public class AdminStatsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain");
+        PrintWriter writer = response.getWriter();
+        for (Map.Entry<String, Long> stat : RequestStats.getStats().entrySet()) {
+            writer.println("endpoint." + stat.getKey() + " " + stat.getValue());
+        }
+        for (Map.Entry<String, Long> stat : QueryCache.getStats().entrySet()) {
+            writer.println("queryCache." + stat.getKey() + " " + stat.getValue());
+        }
+        for (Map.Entry<String, Long> stat : ConferenceCache.getStats().entrySet()) {
+            writer.println("conferenceCache." + stat.getKey() + " " + stat.getValue());
+        }
+        for (Map.Entry<String, Long> stat : ProfileCache.getStats().entrySet()) {
+            writer.println("profileCache." + stat.getKey() + " " + stat.getValue());
+        }
+        for (Map.Entry<String, Long> stat : FilterSelectivity.getStats().entrySet()) {
+            writer.println("filterSelectivity." + stat.getKey() + " " + stat.getValue());
+        }
+        for (Map.Entry<String, Long> stat : ConfirmationEmails.getStats().entrySet()) {
+            writer.println("confirmationEmails." + stat.getKey() + " " + stat.getValue());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.service.Registrations;
+import com.google.devrel.training.conference.service.UserIdResolver;
+import com.googlecode.objectify.Key;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A servlet for exporting the attendees of a conference as CSV, for its organizer.
+ *
+ * The registrations are walked in batches with a cursor and each batch is written out before
+ * the next one is loaded, so memory use doesn't depend on the number of attendees.
+ */
+@SuppressWarnings("serial")
+public class ExportAttendeesServlet extends HttpServlet {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        User user = UserServiceFactory.getUserService().getCurrentUser();
+        if (user == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        Key<Conference> conferenceKey;
+        try {
+            conferenceKey = Key.create(request.getParameter("websafeConferenceKey"));
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Conference conference = ofy().load().key(conferenceKey).now();
+        if (conference == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!conference.getOrganizerUserId().equals(UserIdResolver.resolve(user))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"attendees.csv\"");
+        PrintWriter writer = response.getWriter();
+        writer.print("userId,displayName,mainEmail,teeShirtSize\r\n");
+        String cursor = null;
+        do {
+            QueryResultIterator<Key<Registration>> iterator =
+                    Registrations.attendeesQuery(conferenceKey, BATCH_SIZE, cursor)
+                            .keys().iterator();
+            List<Key<Profile>> profileKeys = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasNext()) {
+                profileKeys.add(iterator.next().<Profile>getParent());
+            }
+            Map<Key<Profile>, Profile> profiles = ofy().load().keys(profileKeys);
+            for (Key<Profile> profileKey : profileKeys) {
+                Profile profile = profiles.get(profileKey);
+                if (profile == null) {
+                    continue;
+                }
+                writer.print(csv(profile.getUserId()) + "," + csv(profile.getDisplayName()) + ","
+                        + csv(profile.getMainEmail()) + ","
+                        + csv(String.valueOf(profile.getTeeShirtSize())) + "\r\n");
+            }
+            writer.flush();
+            // The batch was written out, don't keep it in the session cache.
+            ofy().clear();
+            Cursor next = iterator.getCursor();
+            cursor = profileKeys.size() == BATCH_SIZE && next != null
+                    ? next.toWebSafeString() : null;
+        } while (cursor != null);
+    }
+
+    /**
+     * Quotes the given value as a CSV field when needed.
+     *
+     * Spreadsheets evaluate the fields starting with =, +, -, @, a tab or a carriage return as
+     * formulas, so those are prefixed with a quote and read as text. Display names are chosen
+     * by the attendees.
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,24 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.ConferenceImports;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A servlet for importing one batch of an ImportJob, scheduled by ConferenceImports.
+ */
+@SuppressWarnings("serial")
+public class ImportConferencesServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        ConferenceImports.importBatch(Long.parseLong(request.getParameter("importJobId")),
+                Integer.parseInt(request.getParameter("batch")));
+        response.setStatus(204);
+    }
+}
@@ -0,0 +1,72 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.ConferenceSearch;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A servlet for writing conferences to the search index.
+ *
+ * With a websafeConferenceKey, indexes that conference, as scheduled by the transactions that
+ * write it. Without one, reindexes every conference a batch at a time, enqueueing the next batch
+ * with its cursor.
+ */
+@SuppressWarnings("serial")
+public class IndexConferenceServlet extends HttpServlet {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String websafeConferenceKey = request.getParameter("websafeConferenceKey");
+        if (websafeConferenceKey != null) {
+            Conference conference =
+                    ofy().load().key(Key.<Conference>create(websafeConferenceKey)).now();
+            if (conference == null) {
+                ConferenceSearch.remove(websafeConferenceKey);
+            } else {
+                ConferenceSearch.index(Collections.singletonList(conference));
+            }
+            response.setStatus(204);
+            return;
+        }
+
+        Query<Conference> query = ofy().load().type(Conference.class).limit(BATCH_SIZE);
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            query = query.startAt(Cursor.fromWebSafeString(cursor));
+        }
+        QueryResultIterator<Conference> iterator = query.iterator();
+        List<Conference> conferences = new ArrayList<>(BATCH_SIZE);
+        while (iterator.hasNext()) {
+            conferences.add(iterator.next());
+        }
+        if (!conferences.isEmpty()) {
+            ConferenceSearch.index(conferences);
+        }
+        Cursor next = iterator.getCursor();
+        if (conferences.size() == BATCH_SIZE && next != null) {
+            QueueFactory.getDefaultQueue().add(
+                    TaskOptions.Builder.withUrl("/tasks/index_conference")
+                    .param("cursor", next.toWebSafeString()));
+        }
+        response.setStatus(204);
+    }
+}
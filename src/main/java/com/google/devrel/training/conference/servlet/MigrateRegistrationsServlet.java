@@ -0,0 +1,55 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.service.Registrations;
+import com.googlecode.objectify.cmd.Query;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A servlet for migrating the registrations still held by Profiles to Registration entities,
+ * so that they show up in the attendee lists.
+ *
+ * Each run handles a batch of Profiles and enqueues the next batch with its cursor.
+ */
+@SuppressWarnings("serial")
+public class MigrateRegistrationsServlet extends HttpServlet {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Query<Profile> query = ofy().load().type(Profile.class).limit(BATCH_SIZE);
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            query = query.startAt(Cursor.fromWebSafeString(cursor));
+        }
+        QueryResultIterator<Profile> iterator = query.iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            Profile profile = iterator.next();
+            count++;
+            if (!profile.getConferenceKeysToAttend().isEmpty()) {
+                Registrations.migrate(profile.getUserId());
+            }
+        }
+        Cursor next = iterator.getCursor();
+        if (count == BATCH_SIZE && next != null) {
+            QueueFactory.getDefaultQueue().add(
+                    TaskOptions.Builder.withUrl("/tasks/migrate_registrations")
+                    .param("cursor", next.toWebSafeString()));
+        }
+        response.setStatus(204);
+    }
+}
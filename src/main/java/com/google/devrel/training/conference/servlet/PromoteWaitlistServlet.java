@@ -0,0 +1,32 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.Waitlists;
+import com.googlecode.objectify.Key;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A servlet for booking the available seats of a conference for the users on its waitlist.
+ * Scheduled by Waitlists.schedulePromotion when seats may have become available.
+ */
+@SuppressWarnings("serial")
+public class PromoteWaitlistServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Key<Conference> conferenceKey = Key.create(request.getParameter("websafeConferenceKey"));
+        Conference conference = ofy().load().key(conferenceKey).now();
+        if (conference != null) {
+            Waitlists.promote(conference);
+        }
+        response.setStatus(204);
+    }
+}
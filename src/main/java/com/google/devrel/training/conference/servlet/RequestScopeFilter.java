@@ -0,0 +1,141 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.ProfileCache;
+import com.google.devrel.training.conference.service.RequestStats;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A filter opening the per-request scopes of the caches around every request, and recording
+ * its latency and API calls in RequestStats.
+ */
+public class RequestScopeFilter implements Filter {
+
+    /**
+     * The name of the requests to anything but an endpoint or a servlet of the app.
+     */
+    public static final String OTHER = "other";
+
+    private static final String WEB_XML = "/WEB-INF/web.xml";
+
+    /**
+     * The names of the methods of ConferenceApi, the endpoints.
+     */
+    private static final Set<String> ENDPOINTS = new HashSet<>();
+
+    static {
+        for (Method method : ConferenceApi.class.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers())) {
+                ENDPOINTS.add(method.getName());
+            }
+        }
+    }
+
+    /**
+     * The paths of the servlets mapped in web.xml, named after themselves. Read by init.
+     */
+    private Set<String> servletPaths = Collections.emptySet();
+
+    /**
+     * Returns the paths the servlets of the given web.xml are mapped to. Wildcard mappings,
+     * like the one of Endpoints, are left out.
+     *
+     * @param webXml the content of web.xml.
+     * @return the paths.
+     * @throws IOException when web.xml can't be read.
+     * @throws ParserConfigurationException when no XML parser is available.
+     * @throws SAXException when web.xml isn't valid XML.
+     */
+    static Set<String> readServletPaths(InputStream webXml)
+            throws IOException, ParserConfigurationException, SAXException {
+        Document document =
+                DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(webXml);
+        Set<String> paths = new HashSet<>();
+        NodeList mappings = document.getElementsByTagName("servlet-mapping");
+        for (int i = 0; i < mappings.getLength(); i++) {
+            NodeList patterns =
+                    ((Element) mappings.item(i)).getElementsByTagName("url-pattern");
+            for (int j = 0; j < patterns.getLength(); j++) {
+                String pattern = patterns.item(j).getTextContent().trim();
+                if (!pattern.contains("*")) {
+                    paths.add(pattern);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the name of the endpoint or servlet serving the given request.
+     *
+     * Endpoints requests reach the backend as /_ah/spi/{api class}.{method}, they are named
+     * after the method. Servlets are named after their path. Any other request, e.g. for a
+     * static file or an unknown path, is named OTHER, so that the number of names is bounded.
+     *
+     * @param request the request.
+     * @return the name of the endpoint, e.g. "getProfile" or "/tasks/sync_seats_available".
+     */
+    public String getEndpointName(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.startsWith("/_ah/spi/")) {
+            String method = uri.substring(uri.lastIndexOf('.') + 1);
+            return ENDPOINTS.contains(method) ? method : OTHER;
+        }
+        return servletPaths.contains(uri) ? uri : OTHER;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        ApiCallCounter.install();
+        try (InputStream webXml =
+                filterConfig.getServletContext().getResourceAsStream(WEB_XML)) {
+            if (webXml == null) {
+                throw new ServletException(WEB_XML + " not found");
+            }
+            servletPaths = readServletPaths(webXml);
+        } catch (IOException | ParserConfigurationException | SAXException e) {
+            throw new ServletException("Could not read the servlet mappings of " + WEB_XML, e);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String endpoint = getEndpointName((HttpServletRequest) request);
+        long start = System.currentTimeMillis();
+        RequestStats.beginRequest(endpoint);
+        ProfileCache.beginRequest(endpoint);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ProfileCache.endRequest();
+            RequestStats.endRequest(System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.google.devrel.training.conference.servlet;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.service.Announcements;
+import com.google.devrel.training.conference.service.QueryCache;
+import com.google.devrel.training.conference.service.SeatInventory;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.Work;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A servlet for writing the total of the seat shards back to the Conference entity.
+ * Scheduled by SeatInventory.scheduleSync after registrations and unregistrations.
+ */
+@SuppressWarnings("serial")
+public class SyncSeatsAvailableServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        final Key<Conference> conferenceKey =
+                Key.create(request.getParameter("websafeConferenceKey"));
+        Conference conference = ofy().load().key(conferenceKey).now();
+        if (conference != null) {
+            final int seatsAvailable =
+                    SeatInventory.countSeatsAvailable(SeatInventory.loadShards(conference));
+            Conference synced = ofy().transact(new Work<Conference>() {
+                @Override
+                public Conference run() {
+                    Conference conference = ofy().load().key(conferenceKey).now();
+                    if (conference == null || conference.getSeatsAvailable() == seatsAvailable) {
+                        return null;
+                    }
+                    conference.syncSeatsAvailable(seatsAvailable);
+                    ofy().save().entity(conference).now();
+                    return conference;
+                }
+            });
+            if (synced != null) {
+                // Cached pages display seatsAvailable.
+                QueryCache.invalidate(null, synced);
+                Announcements.update(synced);
+            }
+        }
+        response.setStatus(204);
+    }
+}
@@ -0,0 +1,41 @@
+package com.google.devrel.training.conference.servlet;
+
+import com.google.devrel.training.conference.service.Facets;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A servlet for applying the facet deltas enqueued by the transactions that write conferences.
+ *
+ * Each parameter is a facet value with its delta. With a rebuild parameter instead, recounts
+ * every facet value.
+ */
+@SuppressWarnings("serial")
+public class UpdateFacetsServlet extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (request.getParameter("rebuild") != null) {
+            Facets.rebuild();
+            response.setStatus(204);
+            return;
+        }
+        Map<String, Integer> deltas = new HashMap<>();
+        // The Servlet 2.5 map is raw, its keys are the parameter names.
+        for (Object name : request.getParameterMap().keySet()) {
+            deltas.put((String) name, Integer.parseInt(request.getParameter((String) name)));
+        }
+        // Retries of a task keep its name, which is how they are applied only once.
+        String taskName = request.getHeader("X-AppEngine-TaskName");
+        Facets.apply(taskName != null ? taskName : UUID.randomUUID().toString(), deltas);
+        response.setStatus(204);
+    }
+}
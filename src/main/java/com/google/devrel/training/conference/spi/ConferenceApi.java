@@ -8,33 +8,63 @@ import com.google.api.server.spi.config.Api;
 import com.google.api.server.spi.config.ApiMethod;
 import com.google.api.server.spi.config.ApiMethod.HttpMethod;
 import com.google.api.server.spi.config.Named;
+import com.google.api.server.spi.config.Nullable;
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.api.server.spi.response.CollectionResponse;
 import com.google.api.server.spi.response.ConflictException;
 import com.google.api.server.spi.response.ForbiddenException;
 import com.google.api.server.spi.response.UnauthorizedException;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.users.User;
 import com.google.devrel.training.conference.Constants;
 import com.google.devrel.training.conference.domain.Announcement;
-import com.google.devrel.training.conference.domain.AppEngineUser;
 import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferenceDetail;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.google.devrel.training.conference.domain.ConferenceSnapshot;
+import com.google.devrel.training.conference.domain.FacetCounts;
+import com.google.devrel.training.conference.domain.ImportJob;
 import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.domain.WaitlistEntry;
 import com.google.devrel.training.conference.form.ConferenceForm;
 import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ImportForm;
 import com.google.devrel.training.conference.form.ProfileForm;
 import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.Announcements;
+import com.google.devrel.training.conference.service.ConferenceCache;
+import com.google.devrel.training.conference.service.ConferenceImports;
+import com.google.devrel.training.conference.service.ConferenceSearch;
+import com.google.devrel.training.conference.service.ConferenceSnapshots;
+import com.google.devrel.training.conference.service.ConfirmationEmails;
+import com.google.devrel.training.conference.service.Facets;
+import com.google.devrel.training.conference.service.NearbyConferences;
+import com.google.devrel.training.conference.service.OrganizerHydrator;
+import com.google.devrel.training.conference.service.ProfileCache;
+import com.google.devrel.training.conference.service.QueryCache;
+import com.google.devrel.training.conference.service.Registrations;
+import com.google.devrel.training.conference.service.RequestStats;
+import com.google.devrel.training.conference.service.SeatInventory;
+import com.google.devrel.training.conference.service.UserIdResolver;
+import com.google.devrel.training.conference.service.Waitlists;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.LoadResult;
 import com.googlecode.objectify.NotFoundException;
-import com.googlecode.objectify.Objectify;
+import com.googlecode.objectify.Result;
 import com.googlecode.objectify.Work;
 import com.google.appengine.api.memcache.MemcacheService;
 import com.google.appengine.api.memcache.MemcacheServiceFactory;
-import com.google.appengine.api.taskqueue.Queue;
-import com.google.appengine.api.taskqueue.QueueFactory;
-import com.google.appengine.api.taskqueue.TaskOptions;
 //import com.google.appengine.api.taskqueue.TaskQueuePb.TaskQueueFetchQueuesResponse.Queue;
 import java.nio.channels.NonWritableChannelException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import com.googlecode.objectify.cmd.Query;
@@ -46,8 +76,8 @@ import com.googlecode.objectify.cmd.Query;
         Constants.WEB_CLIENT_ID, Constants.API_EXPLORER_CLIENT_ID }, description = "API for the Conference Central Backend application.")
 public class ConferenceApi {
 
-	private static final Logger LOG = Logger.getLogger(ConferenceApi.class.getName());
-	
+    private static final Logger LOG = Logger.getLogger(ConferenceApi.class.getName());
+
     private static String extractDefaultDisplayNameFromEmail(String email) {
         return email == null ? null : email.substring(0, email.indexOf("@"));
     }
@@ -75,36 +105,49 @@ public class ConferenceApi {
         // TODO 1
         // Get the displayName and teeShirtSize sent by the request.
 
-        String displayName = profileForm.getDisplayName();
-        TeeShirtSize teeShirtSize = profileForm.getTeeShirtSize();
+        final String displayName = profileForm.getDisplayName();
+        final TeeShirtSize teeShirtSize = profileForm.getTeeShirtSize();
 
-        // Get the Profile from the datastore if it exists
-        // otherwise create a new one
-        Profile profile = ofy().load().key(Key.create(Profile.class, getUserId(user)))
-                .now();
+        // Get the Profile from the datastore if it exists, otherwise create a new one. The
+        // ProfileCache may be stale, so the Profile is read and written in a transaction and
+        // only cached once committed.
+        final String userId = getUserId(user);
+        final boolean[] displayNameChanged = new boolean[1];
+        Profile profile = ofy().transact(new Work<Profile>() {
+            @Override
+            public Profile run() {
+                displayNameChanged[0] = false;
+                Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                if (profile == null) {
+                    // Populate the displayName and teeShirtSize with default values
+                    // if not sent in the request
+                    profile = new Profile(userId,
+                            displayName == null
+                                    ? extractDefaultDisplayNameFromEmail(user.getEmail())
+                                    : displayName,
+                            user.getEmail(),
+                            teeShirtSize == null ? TeeShirtSize.NOT_SPECIFIED : teeShirtSize);
+                } else {
+                    // The Profile entity already exists
+                    // Update the Profile entity
+                    String previousDisplayName = profile.getDisplayName();
+                    profile.update(displayName, teeShirtSize);
+                    displayNameChanged[0] =
+                            !Objects.equals(previousDisplayName, profile.getDisplayName());
+                }
 
-        if (profile == null) {
-            // Populate the displayName and teeShirtSize with default values
-            // if not sent in the request
-            if (displayName == null) {
-                displayName = extractDefaultDisplayNameFromEmail(user
-                        .getEmail());
+                // TODO 3
+                // Save the entity in the datastore
+                ofy().save().entity(profile).now();
+                return profile;
             }
-            if (teeShirtSize == null) {
-                teeShirtSize = TeeShirtSize.NOT_SPECIFIED;
-            }
-            // Now create a new Profile entity
-            profile = new Profile(getUserId(user), displayName, user.getEmail(), teeShirtSize);
-        } else {
-            // The Profile entity already exists
-            // Update the Profile entity
-            profile.update(displayName, teeShirtSize);
+        });
+        ProfileCache.put(profile);
+        // The cached pages of conferences render the display names of their organizers.
+        if (displayNameChanged[0]) {
+            QueryCache.invalidateOrganizers();
         }
 
-        // TODO 3
-        // Save the entity in the datastore
-        ofy().save().entity(profile).now();
-
         // Return the profile
         return profile;
     }
@@ -133,37 +176,31 @@ public class ConferenceApi {
         Profile profile = (Profile) ofy().load().key(key).now();
         return profile;*/
         
-        return ofy().load().key(Key.create(Profile.class, getUserId(user))).now();
+        return ProfileCache.get(getUserId(user));
     }
     
     
    
+    /**
+     * Loads the user's Profile from the datastore, bypassing the ProfileCache so that it can be
+     * used in transactions.
+     */
     private static Profile getProfileFromUser(User user, String userId) {
         // First fetch the user's Profile from the datastore.
         Profile profile = ofy().load().key(
-                Key.create(Profile.class, user.getUserId())).now();
+                Key.create(Profile.class, userId)).now();
         if (profile == null) {
             // Create a new Profile if it doesn't exist.
             // Use default displayName and teeShirtSize
             String email = user.getEmail();
-            profile = new Profile(user.getUserId(),
+            profile = new Profile(userId,
                     extractDefaultDisplayNameFromEmail(email), email, TeeShirtSize.NOT_SPECIFIED);
         }
         return profile;
     }
     
     private static String getUserId(User user) {
-    	String userId = user.getUserId();
-    	if (userId == null) {
-    		LOG.info("userId is null, so trying to obtain it from the datastore.");
-    		AppEngineUser appEngineUser = new AppEngineUser(user);
-    		ofy().save().entity(appEngineUser).now();
-    		Objectify objectify = ofy().factory().begin();
-    		AppEngineUser savedUser = objectify.load().key(appEngineUser.getKey()).now();
-    		userId = savedUser.getUser().getUserId();
-    		LOG.info("Obtained the UserId: " + userId);
-    	}
-    	return userId;
+        return UserIdResolver.resolve(user);
     }
 
 /**
@@ -173,22 +210,31 @@ public class ConferenceApi {
      * @param conferenceForm A ConferenceForm object representing user's inputs.
      * @return A newly created Conference Object.
      * @throws UnauthorizedException when the user is not signed in.
+     * @throws BadRequestException when the coordinates are invalid.
      */
     @ApiMethod(name = "createConference", path = "conference", httpMethod = HttpMethod.POST)
     public Conference createConference(final User user, final ConferenceForm conferenceForm)
-        throws UnauthorizedException {
+        throws UnauthorizedException, BadRequestException {
         if (user == null) {
             throw new UnauthorizedException("Authorization required");
         }
+        // Checked before the seat shards are saved.
+        try {
+            conferenceForm.checkLocation();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
         
         
 
         // TODO (Lesson 4)
         // Get the userId of the logged in User
 
+        final String userId = getUserId(user);
+
         // TODO (Lesson 4)
         // Get the key for the User's Profile
-        Key<Profile> profileKey = Key.create(Profile.class, getUserId(user));
+        Key<Profile> profileKey = Key.create(Profile.class, userId);
         
 
         // TODO (Lesson 4)
@@ -199,28 +245,37 @@ public class ConferenceApi {
         // TODO (Lesson 4)
         // Get the Conference Id from the Key
         final long conferenceId = conferenceKey.getId();
-        
-        final Queue queue = QueueFactory.getDefaultQueue();
-        
-        final String userId = getUserId(user);
+
+        // The seat shards are root entities, so they are saved outside of the transaction.
+        // Until the transaction commits they are unreachable.
+        Result<Map<Key<SeatShard>, SeatShard>> shardsSaved = ofy().save().entities(
+                SeatInventory.createShards(conferenceKey, conferenceForm.getMaxAttendees()));
 
         // TODO (Lesson 4)
         // Get the existing Profile entity for the current user if there is one
         // Otherwise create a new Profile entity with default values
+        // Holds the Profile saved by the transaction, to write it through the cache once committed.
+        final Profile[] savedProfile = new Profile[1];
        
         Conference conference = ofy().transact(new Work<Conference>() {
-        	@Override
-        	public Conference run() {
+            @Override
+            public Conference run() {
                 Profile profile = getProfileFromUser(user, userId);
+                savedProfile[0] = profile;
                 Conference conference = new Conference(conferenceId, userId, conferenceForm);
+                conference.attachOrganizer(profile);
                 ofy().save().entities(conference, profile).now();
-                queue.add(ofy().getTransaction(),
-                		TaskOptions.Builder.withUrl("/tasks/send_confirmation_email")
-                		.param("email", profile.getMainEmail())
-                		.param("conferenceInfo", conference.toString()));
-        	return conference;
-        	}
+                Facets.scheduleUpdate(Collections.<String>emptySet(), conference);
+                ConfirmationEmails.enqueue(ofy().getTransaction(), profile.getMainEmail(),
+                        conference.toString());
+                ConferenceSearch.scheduleIndexing(conferenceKey);
+            return conference;
+            }
         });
+        shardsSaved.now();
+        ConfirmationEmails.scheduleSend();
+        ProfileCache.put(savedProfile[0]);
+        QueryCache.invalidate(null, conference);
         return conference;
     }
         // TODO (Lesson 4)
@@ -233,90 +288,333 @@ public class ConferenceApi {
          //ofy().save().entities(conference, profile).now();
     
     @ApiMethod(
-    		name = "updateConference",
-    		path = "conference/{websafeConferenceKey}",
-    		httpMethod = HttpMethod.PUT
-    		)
+            name = "updateConference",
+            path = "conference/{websafeConferenceKey}",
+            httpMethod = HttpMethod.PUT
+    )
     public Conference updateConference(final User user, final ConferenceForm conferenceForm,
-    		@Named("websafeConferenceKey")
-    final String websafeConferenceKey)
-    throws UnauthorizedException, NotFoundException, ForbiddenException, ConflictException {
-    	if (user == null) {
-    		throw new UnauthorizedException("Authorization required");
-    	}
-    	final String userId = getUserId(user);
-    	
-    	TxResult<Conference> result = ofy().transact(new Work<TxResult<Conference>>() {
-    		@Override
-    		public TxResult<Conference> run() {
-    			Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
-    			Conference conference = ofy().load().key(conferenceKey).now();
-    			if(conference == null) {
-    				return new TxResult<>(
-    					new NotFoundException());
-    				}
-    				Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
-    				if (profile == null ||
-    						!conference.getOrganizerUserId().equals(userId)) {
-    					return new TxResult<>(
-    							new ForbiddenException("Only the owner can update the conference."));
-    		}
-    				conference.updateWithConferenceForm(conferenceForm);
-    				ofy().save().entity(conference).now();
-    				return new TxResult<>(conference);
-    		}
-    	});
-    	return result.getResult();
+            @Named("websafeConferenceKey") final String websafeConferenceKey)
+            throws UnauthorizedException, NotFoundException, ForbiddenException,
+            ConflictException, BadRequestException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        // Checked before the seat shards are resized.
+        try {
+            conferenceForm.checkLocation();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        final String userId = getUserId(user);
+        final Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+
+        // The seat shards are resized first, each in its own transaction, so that the capacity
+        // of the shards never exceeds maxAttendees.
+        Conference existing = ofy().load().key(conferenceKey).now();
+        if (existing == null) {
+            throw new NotFoundException();
+        }
+        if (!existing.getOrganizerUserId().equals(userId)) {
+            throw new ForbiddenException("Only the owner can update the conference.");
+        }
+        final int seatsAvailable =
+                SeatInventory.countSeatsAvailable(SeatInventory.loadShards(existing));
+        if (conferenceForm.getMaxAttendees() != existing.getMaxAttendees()
+                && !SeatInventory.resize(existing, conferenceForm.getMaxAttendees())) {
+            throw new ConflictException("Seats are already allocated beyond maxAttendees.");
+        }
+
+        TxResult<Conference> result = ofy().transact(new Work<TxResult<Conference>>() {
+            @Override
+            public TxResult<Conference> run() {
+                Conference conference = ofy().load().key(conferenceKey).now();
+                if (conference == null) {
+                    return new TxResult<>(new NotFoundException());
+                }
+                Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                if (profile == null || !conference.getOrganizerUserId().equals(userId)) {
+                    return new TxResult<>(
+                            new ForbiddenException("Only the owner can update the conference."));
+                }
+                Set<String> facetValues = Facets.valuesOf(conference);
+                conference.syncSeatsAvailable(seatsAvailable);
+                conference.updateWithConferenceForm(conferenceForm);
+                conference.attachOrganizer(profile);
+                ofy().save().entity(conference).now();
+                ConferenceSearch.scheduleIndexing(conferenceKey);
+                Facets.scheduleUpdate(facetValues, conference);
+                return new TxResult<>(conference);
+            }
+        });
+        Conference conference = result.getResult();
+        QueryCache.invalidate(existing, conference);
+        ConferenceCache.invalidate(conferenceKey);
+        // The announcement displays the name of the conference.
+        Announcements.update(conference);
+        SeatInventory.scheduleSync(conferenceKey);
+        if (conference.getMaxAttendees() > existing.getMaxAttendees()) {
+            Waitlists.schedulePromotion(conferenceKey);
+        }
+        return conference;
     }
 
     @ApiMethod(
-    		name = "getAnnouncement",
-    		path = "announcement",
-    		httpMethod = HttpMethod.GET
-    		)
+            name = "getAnnouncement",
+            path = "announcement",
+            httpMethod = HttpMethod.GET
+            )
     public Announcement getAnnouncement() {
-    	MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
-    	Object message = memcacheService.get(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
-    	if(message != null) {
-    		return new Announcement(message.toString());
-    	}
-    	return null;
+        MemcacheService memcacheService = MemcacheServiceFactory.getMemcacheService();
+        Object message = memcacheService.get(Constants.MEMCACHE_ANNOUNCEMENTS_KEY);
+        if(message != null) {
+            return new Announcement(message.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of conferences per topic, city and starting month.
+     *
+     * @return the FacetCounts.
+     */
+    @ApiMethod(
+            name = "getFacets",
+            path = "facets",
+            httpMethod = HttpMethod.GET
+    )
+    public FacetCounts getFacets() {
+        return Facets.get();
+    }
+
+    /**
+     * Returns the page size to use, Constants.DEFAULT_PAGE_SIZE when not specified.
+     */
+    private static int getPageSize(Integer pageSize) {
+        return pageSize == null || pageSize <= 0 ? Constants.DEFAULT_PAGE_SIZE
+                : Math.min(pageSize, Constants.MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Runs the given query for one page of conferences.
+     *
+     * @param query the query, already limited to pageSize results.
+     * @param pageSize the number of conferences in a page.
+     * @return the page, with a nextPageToken when there may be more results.
+     */
+    private static ConferencePage fetchPage(Query<Conference> query, int pageSize) {
+        return fetchPage(query, pageSize, null);
+    }
+
+    /**
+     * Reads one page of results, keeping only those matching the post-filters of the form.
+     *
+     * Reading stops as soon as the page is full, or after Constants.MAX_SCANNED_PER_PAGE
+     * results, in which case the page may be short but still has a nextPageToken.
+     *
+     * @param form the form the query was planned by, which also makes the nextPageToken, or
+     *             null for other queries.
+     */
+    private static ConferencePage fetchPage(Query<Conference> query, int pageSize,
+            ConferenceQueryForm form) {
+        QueryResultIterator<Conference> iterator = query.iterator();
+        List<Conference> result = new ArrayList<>(pageSize);
+        int scanned = 0;
+        while (result.size() < pageSize && scanned < Constants.MAX_SCANNED_PER_PAGE
+                && iterator.hasNext()) {
+            Conference conference = iterator.next();
+            scanned++;
+            if (form == null || form.matches(conference)) {
+                result.add(conference);
+            }
+        }
+        String nextPageToken = null;
+        if (result.size() == pageSize
+                || (scanned == Constants.MAX_SCANNED_PER_PAGE && iterator.hasNext())) {
+            Cursor cursor = iterator.getCursor();
+            if (cursor != null) {
+                nextPageToken = form == null
+                        ? cursor.toWebSafeString() : form.nextPageToken(cursor);
+            }
+        }
+        return ConferenceSnapshots.page(result, nextPageToken);
+    }
+
+    /**
+     * Reads one page of the results of a date-range query, walking its buckets in order.
+     *
+     * Like fetchPage, reading stops as soon as the page is full, or after
+     * Constants.MAX_SCANNED_PER_PAGE results.
+     */
+    private static ConferencePage fetchBucketedPage(ConferenceQueryForm form) {
+        int pageSize = form.getPageSize();
+        int bucketCount = form.getBucketCount();
+        List<Conference> result = new ArrayList<>(pageSize);
+        int scanned = 0;
+        for (int bucket = form.getStartBucket(); bucket < bucketCount; bucket++) {
+            QueryResultIterator<Conference> iterator = form.getBucketQuery(bucket).iterator();
+            while (result.size() < pageSize && scanned < Constants.MAX_SCANNED_PER_PAGE
+                    && iterator.hasNext()) {
+                Conference conference = iterator.next();
+                scanned++;
+                if (form.matches(conference, bucket)) {
+                    result.add(conference);
+                }
+            }
+            if (result.size() == pageSize || scanned == Constants.MAX_SCANNED_PER_PAGE) {
+                String nextPageToken = null;
+                if (iterator.hasNext()) {
+                    nextPageToken = ConferenceQueryForm.bucketCursor(bucket, iterator.getCursor());
+                } else if (bucket + 1 < bucketCount) {
+                    nextPageToken = ConferenceQueryForm.bucketCursor(bucket + 1, null);
+                }
+                return ConferenceSnapshots.page(result, nextPageToken);
+            }
+        }
+        return ConferenceSnapshots.page(result, null);
+    }
+
+    /**
+     * Wraps the given page for the response.
+     */
+    private static CollectionResponse<ConferenceSnapshot> toResponse(ConferencePage page) {
+        return CollectionResponse.<ConferenceSnapshot>builder()
+                .setItems(page.getItems())
+                .setNextPageToken(page.getNextPageToken())
+                .build();
     }
 
+    /**
+     * Returns one page of the conferences matching the filters of the given form.
+     * Pages are served from the QueryCache when possible.
+     *
+     * @param conferenceQueryForm the filters, the page size and the cursor of the page.
+     * @return a page of Conferences, with the cursor of the next page as nextPageToken.
+     * @throws BadRequestException when the cursor is not valid.
+     */
     @ApiMethod(
             name = "queryConferences",
             path = "queryConferences",
             httpMethod = HttpMethod.POST
     )
-    public List<Conference> queryConferences(ConferenceQueryForm conferenceQueryForm) {
-        Iterable<Conference> conferenceIterable = conferenceQueryForm.getQuery();
-        List<Conference> result = new ArrayList<>(0);
-        List<Key<Profile>> organizersKeyList = new ArrayList<>(0);
-        for (Conference conference : conferenceIterable) {
-            organizersKeyList.add(Key.create(Profile.class, conference.getOrganizerUserId()));
-            result.add(conference);
-        }
-        // To avoid separate datastore gets for each Conference, pre-fetch the Profiles.
-        ofy().load().keys(organizersKeyList);
-        return result;
+    public CollectionResponse<ConferenceSnapshot> queryConferences(
+            ConferenceQueryForm conferenceQueryForm) throws BadRequestException {
+        Query<Conference> query = null;
+        try {
+            if (!conferenceQueryForm.hasDateRange()) {
+                query = conferenceQueryForm.getQuery();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        String cacheKey = QueryCache.cacheKey(conferenceQueryForm);
+        ConferencePage page = QueryCache.get(cacheKey);
+        if (page == null) {
+            if (conferenceQueryForm.hasDateRange()) {
+                try {
+                    page = fetchBucketedPage(conferenceQueryForm);
+                } catch (IllegalArgumentException e) {
+                    throw new BadRequestException(e.getMessage());
+                }
+            } else {
+                page = fetchPage(query, conferenceQueryForm.getPageSize(), conferenceQueryForm);
+            }
+            QueryCache.put(cacheKey, page);
+        }
+        return toResponse(page);
     }
     
+    /**
+     * Returns one page of the conferences whose name, description, topics or city contain words
+     * starting with each of the words of the search, the best matches first.
+     *
+     * @param search the words to look for.
+     * @param pageSize the number of conferences in a page, optional.
+     * @param cursor the nextPageToken of the previous page, null for the first page.
+     * @return a page of Conferences, with the cursor of the next page as nextPageToken.
+     * @throws BadRequestException when the search has no words or the cursor is not valid.
+     */
+    @ApiMethod(
+            name = "searchConferences",
+            path = "searchConferences",
+            httpMethod = HttpMethod.GET
+    )
+    public CollectionResponse<ConferenceSnapshot> searchConferences(
+            @Named("search") String search,
+            @Nullable @Named("pageSize") Integer pageSize,
+            @Nullable @Named("cursor") String cursor)
+            throws BadRequestException {
+        try {
+            return toResponse(ConferenceSearch.search(search, getPageSize(pageSize), cursor));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the conferences within the given radius of the given point, the closest first.
+     *
+     * @param latitude the latitude of the point, in degrees.
+     * @param longitude the longitude of the point, in degrees.
+     * @param radiusKm the radius, in kilometers, at most NearbyConferences.MAX_RADIUS_KM.
+     * @param pageSize the maximum number of conferences, optional.
+     * @return the Conferences.
+     * @throws BadRequestException when the coordinates or the radius are invalid.
+     */
+    @ApiMethod(
+            name = "nearbyConferences",
+            path = "nearbyConferences",
+            httpMethod = HttpMethod.GET
+    )
+    public CollectionResponse<ConferenceSnapshot> nearbyConferences(
+            @Named("lat") double latitude, @Named("lng") double longitude,
+            @Named("radiusKm") double radiusKm,
+            @Nullable @Named("pageSize") Integer pageSize)
+            throws BadRequestException {
+        try {
+            return toResponse(ConferenceSnapshots.page(NearbyConferences.find(latitude,
+                    longitude, radiusKm, getPageSize(pageSize)), null));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns one page of the conferences created by the user.
+     *
+     * @param user A user who invokes this method, null when the user is not signed in.
+     * @param pageSize the number of conferences in a page, optional.
+     * @param cursor the nextPageToken of the previous page, null for the first page.
+     * @return a page of Conferences, with the cursor of the next page as nextPageToken.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws BadRequestException when the cursor is not valid.
+     */
     @ApiMethod(
             name = "getConferencesCreated",
             path = "getConferencesCreated",
             httpMethod = HttpMethod.POST
     )
-    public List<Conference> getConferencesCreated(final User user) 
-    		throws UnauthorizedException {
+    public CollectionResponse<ConferenceSnapshot> getConferencesCreated(final User user,
+            @Nullable @Named("pageSize") Integer pageSize,
+            @Nullable @Named("cursor") String cursor)
+            throws UnauthorizedException, BadRequestException {
         // If not signed in, throw a 401 error.
         if (user == null) {
             throw new UnauthorizedException("Authorization required");
         }
-        String userId = user.getUserId();
-        Key userKey = Key.create(Profile.class,userId);
-        return ofy().load().type(Conference.class)
+        String userId = getUserId(user);
+        Key<Profile> userKey = Key.create(Profile.class, userId);
+        Query<Conference> query = ofy().load().type(Conference.class)
                 .ancestor(userKey)
-                .order("name").list();
+                .order("name")
+                .limit(getPageSize(pageSize));
+        if (cursor != null) {
+            try {
+                query = query.startAt(ConferenceQueryForm.parseCursor(cursor));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+        return toResponse(fetchPage(query, getPageSize(pageSize)));
     }
     
     @ApiMethod(
@@ -325,11 +623,10 @@ public class ConferenceApi {
             httpMethod = HttpMethod.POST
     )
     public List<Conference> getConferencesFiltered(){
-                
-    Query query = ofy().load().type(Conference.class);
-    query = query.filter("city =", "London");
-    query = query.filter("topics =", "Web Technologies");
-        return query.list();
+        Query<Conference> query = ofy().load().type(Conference.class);
+        query = query.filter("city =", "London");
+        query = query.filter("topics =", "Web Technologies");
+        return OrganizerHydrator.hydrate(query.list());
     }
     
     public List<Conference> filterPlayground() {
@@ -361,6 +658,8 @@ public class ConferenceApi {
     
     /**
      * Returns a Conference object with the given conferenceId.
+     * Its seatsAvailable is aggregated from the seat shards rather than read from the
+     * denormalized copy that the list endpoints return.
      *
      * @param websafeConferenceKey The String representation of the Conference Key.
      * @return a Conference object with the given conferenceId.
@@ -375,11 +674,62 @@ public class ConferenceApi {
             @Named("websafeConferenceKey") final String websafeConferenceKey)
             throws NotFoundException {
         Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
-        Conference conference = ofy().load().key(conferenceKey).now();
+        // The organizer is the parent of the conference key, so its Profile is loaded along with
+        // the conference instead of after it.
+        ProfileCache.prefetch(Collections.singletonList(conferenceKey.getParent().getName()));
+        Conference conference = ConferenceCache.get(conferenceKey);
         if (conference == null) {
             throw new NotFoundException();
         }
-        return conference;
+        return OrganizerHydrator.hydrate(conference);
+    }
+
+    /**
+     * Returns a Conference with its organizer, and whether the user attends it, in one request.
+     *
+     * The Profiles and the registration state are loaded concurrently with the conference.
+     *
+     * @param user A user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @return the ConferenceDetail, not registered nor waitlisted when the user is not signed in.
+     * @throws NotFoundException when there is no Conference with the given key.
+     */
+    @ApiMethod(
+            name = "getConferenceDetail",
+            path = "conference/{websafeConferenceKey}/detail",
+            httpMethod = HttpMethod.GET
+    )
+    public ConferenceDetail getConferenceDetail(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey)
+            throws NotFoundException {
+        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        String userId = user == null ? null : getUserId(user);
+        List<String> userIds = new ArrayList<>(2);
+        userIds.add(conferenceKey.getParent().getName());
+        LoadResult<Registration> registration = null;
+        LoadResult<WaitlistEntry> waitlistEntry = null;
+        if (userId != null) {
+            userIds.add(userId);
+            registration = ofy().load().key(
+                    Registration.createKey(userId, websafeConferenceKey));
+            waitlistEntry = ofy().load().key(
+                    WaitlistEntry.createKey(userId, websafeConferenceKey));
+        }
+        ProfileCache.prefetch(userIds);
+
+        Conference conference = ConferenceCache.get(conferenceKey);
+        if (conference == null) {
+            throw new NotFoundException();
+        }
+        Map<String, Profile> profiles = ProfileCache.getAll(userIds);
+        conference.attachOrganizer(profiles.get(conference.getOrganizerUserId()));
+        if (userId == null) {
+            return new ConferenceDetail(conference, false, false);
+        }
+        Profile profile = profiles.get(userId);
+        boolean registered = registration.now() != null || profile != null
+                && profile.getConferenceKeysToAttend().contains(websafeConferenceKey);
+        return new ConferenceDetail(conference, registered, waitlistEntry.now() != null);
     }
 
 
@@ -414,37 +764,37 @@ public class ConferenceApi {
     }
     
     private static class TxResult<ResultType> {
-    	
-    	private ResultType result;
-    	
-    	private Throwable exception;
-    	
-    	private TxResult(ResultType result) {
-    		this.result = result;
-    	}
-    	
-    	private TxResult(Throwable exception) {
-    		if (exception instanceof NotFoundException ||
-    				exception instanceof ForbiddenException ||
-    				exception instanceof ConflictException) {
-    			this.exception = exception;
-    		} else {
-    			throw new IllegalArgumentException("Exception not supported.");
-    		}
-    	}
-    	
-    	private ResultType getResult() throws NotFoundException, ForbiddenException, ConflictException {
-    		if (exception instanceof NotFoundException) {
-    			throw (NotFoundException) exception;
-    		}
-    		if (exception instanceof ForbiddenException) {
-    			throw (ForbiddenException) exception;
-    		}
-    		if (exception instanceof ConflictException) {
-    			throw (ConflictException) exception;
-    		}
-    		return result;
-    	}
+
+        private ResultType result;
+
+        private Throwable exception;
+
+        private TxResult(ResultType result) {
+            this.result = result;
+        }
+
+        private TxResult(Throwable exception) {
+            if (exception instanceof NotFoundException ||
+                    exception instanceof ForbiddenException ||
+                    exception instanceof ConflictException) {
+                this.exception = exception;
+            } else {
+                throw new IllegalArgumentException("Exception not supported.");
+            }
+        }
+
+        private ResultType getResult() throws NotFoundException, ForbiddenException, ConflictException {
+            if (exception instanceof NotFoundException) {
+                throw (NotFoundException) exception;
+            }
+            if (exception instanceof ForbiddenException) {
+                throw (ForbiddenException) exception;
+            }
+            if (exception instanceof ConflictException) {
+                throw (ConflictException) exception;
+            }
+            return result;
+        }
     }
 
 
@@ -464,39 +814,79 @@ public class ConferenceApi {
         }
 
         // Get the userId
-        final String userId = user.getUserId();
-        TxResult<Boolean> result = ofy().transact(new Work<TxResult<Boolean>>() {
-        	@Override
-        	public TxResult<Boolean> run() {
-        		Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
-        		Conference conference = ofy().load().key(conferenceKey).now();
-        		if (conference == null) {
-        			return new TxResult<>(new NotFoundException());
-        
-        		}
-        		Profile profile = getProfileFromUser(user, userId);
-        		if(profile.getConferenceKeysToAttend().contains(websafeConferenceKey)) {
-        			return new TxResult<>(new ConflictException("You have already registered for this conference"));
-        			
-        		} else if (conference.getSeatsAvailable() <= 0) {
-        			return new TxResult<>(new ConflictException("There are no seats available"));
-        			
-        		} else {
-        			profile.addToConferenceKeysToAttend(websafeConferenceKey);
-        			conference.bookSeats(1);
-        			ofy().save().entities(profile, conference).now();
-        			return new TxResult<>(true);
-        		}
-        	}
-        });
-        return new WrappedBoolean(result.getResult());
+        final String userId = getUserId(user);
+        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        Conference conference = ConferenceCache.get(conferenceKey);
+        if (conference == null) {
+            throw new NotFoundException();
+        }
+        // The seats given back are held for the users on the waitlist, in the order they joined.
+        if (Waitlists.hasWaitingUsers(conferenceKey)) {
+            throw new ConflictException(
+                    "Users are waiting for seats of this conference, join the waitlist");
+        }
+
+        // The seat is booked from a random shard, so only the Registration and that shard are
+        // written. When the shard ran out of seats in the meantime, another one is picked.
+        final Key<Registration> registrationKey =
+                Registration.createKey(userId, websafeConferenceKey);
+        final Profile[] savedProfile = new Profile[1];
+        TxResult<Boolean> result = null;
+        for (int attempt = 0; result == null && attempt < SeatInventory.SHARD_COUNT; attempt++) {
+            final Key<SeatShard> shardKey =
+                    SeatInventory.pickShardToBook(SeatInventory.loadShards(conference));
+            result = ofy().transact(new Work<TxResult<Boolean>>() {
+                @Override
+                public TxResult<Boolean> run() {
+                    savedProfile[0] = null;
+                    Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                    boolean profileChanged = profile == null;
+                    if (profile == null) {
+                        profile = getProfileFromUser(user, userId);
+                    }
+                    // Profiles that still hold the legacy list are migrated on the way.
+                    if (profile.getConferenceKeysToAttend().contains(websafeConferenceKey)
+                            || ofy().load().key(registrationKey).now() != null) {
+                        return new TxResult<>(new ConflictException(
+                                "You have already registered for this conference"));
+                    }
+                    if (shardKey == null) {
+                        return new TxResult<>(
+                                new ConflictException("There are no seats available"));
+                    }
+                    SeatShard shard = ofy().load().key(shardKey).now();
+                    if (shard.getSeatsAvailable() <= 0) {
+                        RequestStats.count(RequestStats.TRANSACTION_RETRIES);
+                        return null;
+                    }
+                    if (Registrations.migrate(profile) || profileChanged) {
+                        ofy().save().entity(profile).now();
+                        savedProfile[0] = profile;
+                    }
+                    shard.bookSeats(1);
+                    ofy().save().entities(new Registration(userId, websafeConferenceKey), shard)
+                            .now();
+                    return new TxResult<>(true);
+                }
+            });
+        }
+        if (result == null) {
+            throw new ConflictException("There are no seats available");
+        }
+        boolean registered = result.getResult();
+        if (savedProfile[0] != null) {
+            ProfileCache.put(savedProfile[0]);
+        }
+        SeatInventory.scheduleSync(conferenceKey);
+        ConferenceCache.invalidate(conferenceKey);
+        return new WrappedBoolean(registered);
     }
     /*
         // TODO
         // Start transaction
         WrappedBoolean result = ofy().transact(new Work<WrappedBoolean>() {
-        	@Override
-        	public WrappedBoolean run() { 
+            @Override
+            public WrappedBoolean run() {
                 try {
 
                 // TODO
@@ -569,38 +959,49 @@ public class ConferenceApi {
 
 
  /**
-     * Returns a collection of Conference Object that the user is going to attend.
+     * Returns one page of the Conference Objects that the user is going to attend.
      *
      * @param user An user who invokes this method, null when the user is not signed in.
-     * @return a Collection of Conferences that the user is going to attend.
+     * @param pageSize the number of conferences in a page, optional.
+     * @param cursor the nextPageToken of the previous page, null for the first page.
+     * @return a page of Conferences that the user is going to attend.
      * @throws UnauthorizedException when the User object is null.
+     * @throws BadRequestException when the cursor is not valid.
      */
     @ApiMethod(
             name = "getConferencesToAttend",
             path = "getConferencesToAttend",
             httpMethod = HttpMethod.GET
     )
-    public Collection<Conference> getConferencesToAttend(final User user)
-            throws UnauthorizedException, NotFoundException {
+    public CollectionResponse<ConferenceSnapshot> getConferencesToAttend(final User user,
+            @Nullable @Named("pageSize") Integer pageSize,
+            @Nullable @Named("cursor") String cursor)
+            throws UnauthorizedException, NotFoundException, BadRequestException {
         // If not signed in, throw a 401 error.
         if (user == null) {
             throw new UnauthorizedException("Authorization required");
         }
         // TODO
         // Get the Profile entity for the user
-        Profile profile = ofy().load().key(Key.create(Profile.class, user.getUserId())).now();
-        if (profile == null) {
-            throw new NotFoundException();
-        }
-
-        // TODO
-        // Get the value of the profile's conferenceKeysToAttend property
-        List<String> keyStringsToAttend = profile.getConferenceKeysToAttend();
-        List<Key<Conference>> keysToAttend = new ArrayList<>();
-        for (String keyString : keyStringsToAttend) {
-        	keysToAttend.add(Key.<Conference>create(keyString));
+        // The Profile is loaded while the registrations are listed. Only the rare Profiles that
+        // still hold the legacy list need the page to be listed again once migrated.
+        String userId = getUserId(user);
+        ProfileCache.prefetch(Collections.singletonList(userId));
+        try {
+            ConferencePage page = Registrations.listConferences(userId, getPageSize(pageSize),
+                    cursor);
+            Profile profile = ProfileCache.get(userId);
+            if (profile == null) {
+                throw new NotFoundException();
+            }
+            if (!profile.getConferenceKeysToAttend().isEmpty()) {
+                Registrations.migrate(userId);
+                page = Registrations.listConferences(userId, getPageSize(pageSize), cursor);
+            }
+            return toResponse(page);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
         }
-        return ofy().load().keys(keysToAttend).values();
 
         // TODO
         // Iterate over keyStringsToAttend,
@@ -625,35 +1026,326 @@ public class ConferenceApi {
             path = "conference/{websafeConferenceKey}/registration",
             httpMethod = HttpMethod.DELETE
     )
-public WrappedBoolean unregisterFromConference(final User user,
+    public WrappedBoolean unregisterFromConference(final User user,
             @Named("websafeConferenceKey") final String websafeConferenceKey)
             throws UnauthorizedException, NotFoundException,
-            ForbiddenException, ConflictException { 
-    	if (user == null) {
-    		throw new UnauthorizedException("Authorization required");
-    		
-    	}
-    	final String userId = getUserId(user);
-    	TxResult<Boolean> result = ofy().transact(new Work<TxResult<Boolean>>() {
-    		@Override
-    		public TxResult<Boolean> run() {
-    			Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
-    			Conference conference = ofy().load().key(conferenceKey).now();
-    			if(conference == null) {
-    				return new TxResult<>(new NotFoundException());
-    			}
-    			Profile profile = getProfileFromUser(user, userId);
-    			if(profile.getConferenceKeysToAttend().contains(websafeConferenceKey)) {
-    				profile.unregisterFromConference(websafeConferenceKey);
-    				conference.giveBackSeats(1);
-    				ofy().save().entities(profile, conference).now();
-    				return new TxResult<>(true);
-    			} else {
-    				return new TxResult<>(false);
-    			}
-    		}
-    	});
-    	return new WrappedBoolean(result.getResult());
+            ForbiddenException, ConflictException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        final String userId = getUserId(user);
+        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        Conference conference = ConferenceCache.get(conferenceKey);
+        if (conference == null) {
+            throw new NotFoundException();
+        }
+
+        // The seat goes back to a random shard that has room for it.
+        final Key<Registration> registrationKey =
+                Registration.createKey(userId, websafeConferenceKey);
+        final Profile[] savedProfile = new Profile[1];
+        TxResult<Boolean> result = null;
+        for (int attempt = 0; result == null && attempt < SeatInventory.SHARD_COUNT; attempt++) {
+            final Key<SeatShard> shardKey =
+                    SeatInventory.pickShardToGiveBack(SeatInventory.loadShards(conference));
+            result = ofy().transact(new Work<TxResult<Boolean>>() {
+                @Override
+                public TxResult<Boolean> run() {
+                    savedProfile[0] = null;
+                    Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                    boolean legacy = profile != null
+                            && profile.getConferenceKeysToAttend().contains(websafeConferenceKey);
+                    if (!legacy && ofy().load().key(registrationKey).now() == null) {
+                        return new TxResult<>(false);
+                    }
+                    if (shardKey == null) {
+                        return new TxResult<>(
+                                new ConflictException("There are no seats to give back"));
+                    }
+                    SeatShard shard = ofy().load().key(shardKey).now();
+                    if (shard.getSeatsAvailable() >= shard.getCapacity()) {
+                        RequestStats.count(RequestStats.TRANSACTION_RETRIES);
+                        return null;
+                    }
+                    if (profile != null && Registrations.migrate(profile)) {
+                        ofy().save().entity(profile).now();
+                        savedProfile[0] = profile;
+                    }
+                    shard.giveBackSeats(1);
+                    ofy().delete().key(registrationKey).now();
+                    ofy().save().entity(shard).now();
+                    return new TxResult<>(true);
+                }
+            });
+        }
+        if (result == null) {
+            throw new ConflictException("There are no seats to give back");
+        }
+        boolean unregistered = result.getResult();
+        if (savedProfile[0] != null) {
+            ProfileCache.put(savedProfile[0]);
+        }
+        if (unregistered) {
+            SeatInventory.scheduleSync(conferenceKey);
+            ConferenceCache.invalidate(conferenceKey);
+            Waitlists.schedulePromotion(conferenceKey);
+        }
+        return new WrappedBoolean(unregistered);
+    }
+
+    /**
+     * Returns a page of the Profiles of the users registered for the specified Conference.
+     *
+     * @param user An user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @param pageSize The maximum number of Profiles, defaults to Constants.DEFAULT_PAGE_SIZE.
+     * @param cursor The nextPageToken of the previous page, null for the first page.
+     * @return a page of Profiles.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws NotFoundException when there is no Conference with the given key.
+     * @throws ForbiddenException when the user is not the organizer of the Conference.
+     * @throws BadRequestException when the cursor is invalid.
+     */
+    @ApiMethod(
+            name = "getConferenceAttendees",
+            path = "conference/{websafeConferenceKey}/attendees",
+            httpMethod = HttpMethod.GET
+    )
+    public CollectionResponse<Profile> getConferenceAttendees(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey,
+            @Nullable @Named("pageSize") Integer pageSize,
+            @Nullable @Named("cursor") String cursor)
+            throws UnauthorizedException, NotFoundException, ForbiddenException,
+            BadRequestException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        Conference conference = ConferenceCache.get(conferenceKey);
+        if (conference == null) {
+            throw new NotFoundException();
+        }
+        if (!conference.getOrganizerUserId().equals(getUserId(user))) {
+            throw new ForbiddenException("Only the owner can list the attendees.");
+        }
+        QueryResultIterator<Key<Registration>> iterator;
+        try {
+            iterator = Registrations.attendeesQuery(conferenceKey, getPageSize(pageSize), cursor)
+                    .keys().iterator();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        List<String> userIds = new ArrayList<>(getPageSize(pageSize));
+        while (iterator.hasNext()) {
+            userIds.add(iterator.next().getParent().getName());
+        }
+        String nextPageToken = null;
+        if (userIds.size() == getPageSize(pageSize)) {
+            Cursor next = iterator.getCursor();
+            nextPageToken = next == null ? null : next.toWebSafeString();
+        }
+        return CollectionResponse.<Profile>builder()
+                .setItems(ProfileCache.getAll(userIds).values())
+                .setNextPageToken(nextPageToken)
+                .build();
+    }
+
+    /**
+     * Returns whether the user is registered for the specified Conference.
+     *
+     * @param user An user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @return Boolean true when the user is registered, otherwise false.
+     * @throws UnauthorizedException when the user is not signed in.
+     */
+    @ApiMethod(
+            name = "isRegisteredForConference",
+            path = "conference/{websafeConferenceKey}/registration",
+            httpMethod = HttpMethod.GET
+    )
+    public WrappedBoolean isRegisteredForConference(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey)
+            throws UnauthorizedException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        String userId = getUserId(user);
+        Profile profile = ProfileCache.get(userId);
+        if (profile != null && !profile.getConferenceKeysToAttend().isEmpty()) {
+            Registrations.migrate(userId);
+        }
+        return new WrappedBoolean(Registrations.isRegistered(userId, websafeConferenceKey));
+    }
+
+    /**
+     * Creates the given conferences in the background, organized by the user.
+     *
+     * The conferences are imported by a chain of tasks. Conferences that can't be created are
+     * skipped, and the reasons are reported by getImportJob.
+     *
+     * @param user A user who invokes this method, null when the user is not signed in.
+     * @param importForm The conferences to create, at most ConferenceImports.MAX_RECORDS.
+     * @return The ImportJob, for following the progress of the import.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws BadRequestException when there are no conferences or too many.
+     */
+    @ApiMethod(
+            name = "importConferences",
+            path = "importConferences",
+            httpMethod = HttpMethod.POST
+    )
+    public ImportJob importConferences(final User user, final ImportForm importForm)
+            throws UnauthorizedException, BadRequestException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        String userId = getUserId(user);
+        Key<Profile> profileKey = Key.create(Profile.class, userId);
+        if (ofy().load().key(profileKey).now() == null) {
+            Profile profile = getProfileFromUser(user, userId);
+            ofy().save().entity(profile).now();
+            ProfileCache.put(profile);
+        }
+        try {
+            return ConferenceImports.start(userId, importForm.getConferences());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the progress of an import started by the user.
+     *
+     * @param user A user who invokes this method, null when the user is not signed in.
+     * @param importJobId The id returned by importConferences.
+     * @return The ImportJob.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws NotFoundException when there is no ImportJob with the given id.
+     * @throws ForbiddenException when the import was started by another user.
+     */
+    @ApiMethod(
+            name = "getImportJob",
+            path = "importJob/{importJobId}",
+            httpMethod = HttpMethod.GET
+    )
+    public ImportJob getImportJob(final User user, @Named("importJobId") final long importJobId)
+            throws UnauthorizedException, NotFoundException, ForbiddenException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        ImportJob job = ofy().load().key(Key.create(ImportJob.class, importJobId)).now();
+        if (job == null) {
+            throw new NotFoundException();
+        }
+        if (!job.getOrganizerUserId().equals(getUserId(user))) {
+            throw new ForbiddenException("Only the organizer can follow the import.");
+        }
+        return job;
+    }
+
+    /**
+     * Adds the user to the waitlist of the specified Conference.
+     *
+     * A seat is booked for the user as soon as one becomes available, in the order users joined
+     * the waitlist, and a confirmation e-mail is sent.
+     *
+     * @param user An user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @return Boolean true when the user joined, false when the user was already waiting.
+     * @throws UnauthorizedException when the user is not signed in.
+     * @throws NotFoundException when there is no Conference with the given key.
+     * @throws ConflictException when the user is already registered.
+     */
+    @ApiMethod(
+            name = "joinWaitlist",
+            path = "conference/{websafeConferenceKey}/waitlist",
+            httpMethod = HttpMethod.POST
+    )
+    public WrappedBoolean joinWaitlist(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey)
+            throws UnauthorizedException, NotFoundException, ForbiddenException,
+            ConflictException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        final String userId = getUserId(user);
+        Key<Conference> conferenceKey = Key.create(websafeConferenceKey);
+        if (ConferenceCache.get(conferenceKey) == null) {
+            throw new NotFoundException();
+        }
+        // Only the user's own entity group is written, however many users are waiting.
+        final Profile[] savedProfile = new Profile[1];
+        TxResult<Boolean> result = ofy().transact(new Work<TxResult<Boolean>>() {
+            @Override
+            public TxResult<Boolean> run() {
+                savedProfile[0] = null;
+                Profile profile = ofy().load().key(Key.create(Profile.class, userId)).now();
+                if (profile == null) {
+                    profile = getProfileFromUser(user, userId);
+                    savedProfile[0] = profile;
+                }
+                if (profile.getConferenceKeysToAttend().contains(websafeConferenceKey)
+                        || Registrations.isRegistered(userId, websafeConferenceKey)) {
+                    return new TxResult<>(new ConflictException(
+                            "You have already registered for this conference"));
+                }
+                Key<WaitlistEntry> entryKey = WaitlistEntry.createKey(userId, websafeConferenceKey);
+                if (ofy().load().key(entryKey).now() != null) {
+                    return new TxResult<>(false);
+                }
+                WaitlistEntry entry = new WaitlistEntry(userId, websafeConferenceKey,
+                        System.currentTimeMillis());
+                if (savedProfile[0] != null) {
+                    ofy().save().entities(entry, profile).now();
+                } else {
+                    ofy().save().entity(entry).now();
+                }
+                return new TxResult<>(true);
+            }
+        });
+        boolean joined = result.getResult();
+        if (savedProfile[0] != null) {
+            ProfileCache.put(savedProfile[0]);
+        }
+        if (joined) {
+            // The conference may not be sold out anymore.
+            Waitlists.schedulePromotion(conferenceKey);
+        }
+        return new WrappedBoolean(joined);
+    }
+
+    /**
+     * Removes the user from the waitlist of the specified Conference.
+     *
+     * @param user An user who invokes this method, null when the user is not signed in.
+     * @param websafeConferenceKey The String representation of the Conference Key.
+     * @return Boolean true when the user was waiting, otherwise false.
+     * @throws UnauthorizedException when the user is not signed in.
+     */
+    @ApiMethod(
+            name = "leaveWaitlist",
+            path = "conference/{websafeConferenceKey}/waitlist",
+            httpMethod = HttpMethod.DELETE
+    )
+    public WrappedBoolean leaveWaitlist(final User user,
+            @Named("websafeConferenceKey") final String websafeConferenceKey)
+            throws UnauthorizedException {
+        if (user == null) {
+            throw new UnauthorizedException("Authorization required");
+        }
+        final Key<WaitlistEntry> entryKey =
+                WaitlistEntry.createKey(getUserId(user), websafeConferenceKey);
+        boolean left = ofy().transact(new Work<Boolean>() {
+            @Override
+            public Boolean run() {
+                if (ofy().load().key(entryKey).now() == null) {
+                    return false;
+                }
+                ofy().delete().key(entryKey).now();
+                return true;
+            }
+        });
+        return new WrappedBoolean(left);
     }
 
     
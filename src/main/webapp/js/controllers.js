@@ -287,6 +287,12 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
      */
     $scope.conferences = [];
 
+    /**
+     * Holds the cursor of the next page of conferences, null when there is no more page.
+     * @type {string}
+     */
+    $scope.nextPageToken = null;
+
     /**
      * Holds the state if offcanvas is enabled.
      *
@@ -406,23 +412,47 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
      * Query the conferences depending on the tab currently selected.
      *
      */
-    $scope.queryConferences = function () {
+    $scope.queryConferences = function (pageToken) {
         $scope.submitted = false;
         if ($scope.selectedTab == 'ALL') {
-            $scope.queryConferencesAll();
+            $scope.queryConferencesAll(pageToken);
         } else if ($scope.selectedTab == 'YOU_HAVE_CREATED') {
-            $scope.getConferencesCreated();
+            $scope.getConferencesCreated(pageToken);
         } else if ($scope.selectedTab == 'YOU_WILL_ATTEND') {
-            $scope.getConferencesAttend();
+            $scope.getConferencesAttend(pageToken);
+        }
+    };
+
+    /**
+     * Appends the next page of conferences for the tab currently selected.
+     */
+    $scope.loadMoreConferences = function () {
+        $scope.queryConferences($scope.nextPageToken);
+    };
+
+    /**
+     * Replaces or, when pageToken is set, extends the conferences displayed with a page of results.
+     *
+     * @param resp the response of the API.
+     * @param pageToken the cursor the page was requested with.
+     */
+    var showPage = function (resp, pageToken) {
+        if (!pageToken) {
+            $scope.conferences = [];
         }
+        angular.forEach(resp.result.items, function (conference) {
+            $scope.conferences.push(conference);
+        });
+        $scope.nextPageToken = resp.result.nextPageToken || null;
     };
 
     /**
      * Invokes the conference.queryConferences API.
      */
-    $scope.queryConferencesAll = function () {
+    $scope.queryConferencesAll = function (pageToken) {
         var sendFilters = {
-            filters: []
+            filters: [],
+            cursor: pageToken
         }
         for (var i = 0; i < $scope.filters.length; i++) {
             var filter = $scope.filters[i];
@@ -452,10 +482,7 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
                         $scope.alertStatus = 'success';
                         $log.info($scope.messages);
 
-                        $scope.conferences = [];
-                        angular.forEach(resp.items, function (conference) {
-                            $scope.conferences.push(conference);
-                        });
+                        showPage(resp, pageToken);
                     }
                     $scope.submitted = true;
                 });
@@ -465,9 +492,9 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
     /**
      * Invokes the conference.getConferencesCreated method.
      */
-    $scope.getConferencesCreated = function () {
+    $scope.getConferencesCreated = function (pageToken) {
         $scope.loading = true;
-        gapi.client.conference.getConferencesCreated().
+        gapi.client.conference.getConferencesCreated({cursor: pageToken}).
             execute(function (resp) {
                 $scope.$apply(function () {
                     $scope.loading = false;
@@ -489,10 +516,7 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
                         $scope.alertStatus = 'success';
                         $log.info($scope.messages);
 
-                        $scope.conferences = [];
-                        angular.forEach(resp.items, function (conference) {
-                            $scope.conferences.push(conference);
-                        });
+                        showPage(resp, pageToken);
                     }
                     $scope.submitted = true;
                 });
@@ -503,9 +527,9 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
      * Retrieves the conferences to attend by calling the conference.getProfile method and
      * invokes the conference.getConference method n times where n == the number of the conferences to attend.
      */
-    $scope.getConferencesAttend = function () {
+    $scope.getConferencesAttend = function (pageToken) {
         $scope.loading = true;
-        gapi.client.conference.getConferencesToAttend().
+        gapi.client.conference.getConferencesToAttend({cursor: pageToken}).
             execute(function (resp) {
                 $scope.$apply(function () {
                     if (resp.error) {
@@ -521,7 +545,7 @@ conferenceApp.controllers.controller('ShowConferenceCtrl', function ($scope, $lo
                         }
                     } else {
                         // The request has succeeded.
-                        $scope.conferences = resp.result.items;
+                        showPage(resp, pageToken);
                         $scope.loading = false;
                         $scope.messages = 'Query succeeded : Conferences you will attend (or you have attended)';
                         $scope.alertStatus = 'success';
@@ -548,12 +572,13 @@ conferenceApp.controllers.controller('ConferenceDetailCtrl', function ($scope, $
 
     /**
      * Initializes the conference detail page.
-     * Invokes the conference.getConference method and sets the returned conference in the $scope.
+     * Invokes the conference.getConferenceDetail method, which returns the conference and whether
+     * the user is attending it in one request.
      *
      */
     $scope.init = function () {
         $scope.loading = true;
-        gapi.client.conference.getConference({
+        gapi.client.conference.getConferenceDetail({
             websafeConferenceKey: $routeParams.websafeConferenceKey
         }).execute(function (resp) {
             $scope.$apply(function () {
@@ -568,27 +593,12 @@ conferenceApp.controllers.controller('ConferenceDetailCtrl', function ($scope, $
                 } else {
                     // The request has succeeded.
                     $scope.alertStatus = 'success';
-                    $scope.conference = resp.result;
-                }
-            });
-        });
-
-        $scope.loading = true;
-        // If the user is attending the conference, updates the status message and available function.
-        gapi.client.conference.getProfile().execute(function (resp) {
-            $scope.$apply(function () {
-                $scope.loading = false;
-                if (resp.error) {
-                    // Failed to get a user profile.
-                } else {
-                    var profile = resp.result;
-                    for (var i = 0; i < profile.conferenceKeysToAttend.length; i++) {
-                        if ($routeParams.websafeConferenceKey == profile.conferenceKeysToAttend[i]) {
-                            // The user is attending the conference.
-                            $scope.alertStatus = 'info';
-                            $scope.messages = 'You are attending this conference';
-                            $scope.isUserAttending = true;
-                        }
+                    $scope.conference = resp.result.conference;
+                    if (resp.result.registered) {
+                        // The user is attending the conference.
+                        $scope.alertStatus = 'info';
+                        $scope.messages = 'You are attending this conference';
+                        $scope.isUserAttending = true;
                     }
                 }
             });
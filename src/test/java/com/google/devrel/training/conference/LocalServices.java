@@ -0,0 +1,81 @@
+package com.google.devrel.training.conference;
+
+import com.google.appengine.tools.development.LocalServerEnvironment;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalSearchServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+
+import java.io.File;
+
+/**
+ * The local services the tests run against, with the app's WEB-INF.
+ *
+ * Tasks are not run automatically, the tests run the ones they need. With indexes enforced,
+ * the datastore only serves the queries covered by WEB-INF/datastore-indexes.xml, like in
+ * production.
+ */
+public class LocalServices {
+
+    private static final File APP_DIR = new File("src/main/webapp");
+
+    /**
+     * Returns a helper for the datastore, memcache, search and task queue services.
+     *
+     * @param enforceIndexes whether queries fail without a composite index in the manifest.
+     * @return the helper, to set up before and tear down after each test.
+     */
+    public static LocalServiceTestHelper helper(boolean enforceIndexes) {
+        return new LocalServiceTestHelper(
+                new LocalDatastoreServiceTestConfig()
+                        .setApplyAllHighRepJobPolicy()
+                        .setNoIndexAutoGen(enforceIndexes),
+                new LocalMemcacheServiceTestConfig(),
+                new LocalSearchServiceTestConfig(),
+                new LocalTaskQueueTestConfig()
+                        .setDisableAutoTaskExecution(true)
+                        .setQueueXmlPath(new File(APP_DIR, "WEB-INF/queue.xml").getPath())) {
+            @Override
+            protected LocalServerEnvironment newLocalServerEnvironment() {
+                final LocalServerEnvironment environment = super.newLocalServerEnvironment();
+                return new LocalServerEnvironment() {
+                    @Override
+                    public File getAppDir() {
+                        return APP_DIR;
+                    }
+
+                    @Override
+                    public String getAddress() {
+                        return environment.getAddress();
+                    }
+
+                    @Override
+                    public int getPort() {
+                        return environment.getPort();
+                    }
+
+                    @Override
+                    public String getHostName() {
+                        return environment.getHostName();
+                    }
+
+                    @Override
+                    public void waitForServerToStart() throws InterruptedException {
+                        environment.waitForServerToStart();
+                    }
+
+                    @Override
+                    public boolean enforceApiDeadlines() {
+                        return environment.enforceApiDeadlines();
+                    }
+
+                    @Override
+                    public boolean simulateProductionLatencies() {
+                        return environment.simulateProductionLatencies();
+                    }
+                };
+            }
+        };
+    }
+}
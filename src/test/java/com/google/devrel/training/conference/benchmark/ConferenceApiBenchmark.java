@@ -0,0 +1,246 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.factory;
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ProfileForm.TeeShirtSize;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.SeatInventory;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Timing harness of the hot paths of ConferenceApi against the local datastore, memcache,
+ * search and task queue services.
+ *
+ * It seeds a catalog, then reports for queryConferences, registerForConference,
+ * getConferencesToAttend and createConference their throughput, p50 and p99 latencies,
+ * allocations and datastore and memcache calls per call. The local services don't have the
+ * latencies of production, the API calls per call are the figures to compare between versions.
+ *
+ * Not run by the build, its name doesn't match the tests of surefire. Run it with
+ *
+ *   mvn test -Dtest=ConferenceApiBenchmark
+ *
+ * The defaults seed 10000 conferences and 100000 profiles. Larger catalogs, up to 1M
+ * conferences, take e.g. -Dbench.conferences=1000000 and a larger heap for the local datastore.
+ *
+ * The properties bench.conferences, bench.profiles, bench.organizers, bench.runs and
+ * bench.warmups size the catalog and the runs.
+ */
+public class ConferenceApiBenchmark {
+
+    private static final String[] CITIES = {"London", "Chicago", "Tokyo", "San Francisco",
+            "Paris", "Berlin", "Sydney", "Toronto", "Bangalore", "Sao Paulo"};
+
+    private static final String[] TOPICS = {"Web", "Mobile", "Cloud", "Data", "Security",
+            "Games", "AI", "IoT", "DevOps", "Design"};
+
+    private static final long DAY_MILLIS = 24L * 3600 * 1000;
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private static final int SEED_BATCH = 500;
+
+    private final int conferenceCount = Integer.getInteger("bench.conferences", 10000);
+
+    private final int profileCount = Integer.getInteger("bench.profiles", 100000);
+
+    private final int organizerCount = Integer.getInteger("bench.organizers", 100);
+
+    private final int runs = Integer.getInteger("bench.runs", 500);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 200);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final Random random = new Random(1);
+
+    private final List<User> users = new ArrayList<>();
+
+    private final List<String> conferenceKeys = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        ApiCallCounter.install();
+        long start = System.currentTimeMillis();
+        seedProfiles();
+        seedConferences();
+        System.out.printf("Seeded %d profiles and %d conferences in %d ms%n", profileCount,
+                conferenceCount, System.currentTimeMillis() - start);
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    /**
+     * Saves the profiles in batches, as saveProfile would have created them.
+     */
+    private void seedProfiles() {
+        List<Profile> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < profileCount; i++) {
+            User user = new User("user" + i + "@example.com", "example.com", "user" + i);
+            batch.add(new Profile(user.getUserId(), "User " + i, user.getEmail(),
+                    TeeShirtSize.NOT_SPECIFIED));
+            users.add(user);
+            if (batch.size() == SEED_BATCH) {
+                ofy().save().entities(batch).now();
+                batch.clear();
+            }
+        }
+        ofy().save().entities(batch).now();
+        ofy().clear();
+    }
+
+    /**
+     * Saves the conferences and their seat shards in batches, bypassing the API, which would
+     * take minutes for a large catalog.
+     */
+    private void seedConferences() {
+        List<Object> batch = new ArrayList<>();
+        for (int organizer = 0; organizer < organizerCount; organizer++) {
+            String userId = users.get(organizer % users.size()).getUserId();
+            Key<Profile> profileKey = Key.create(Profile.class, userId);
+            Profile profile = ofy().load().key(profileKey).now();
+            int count = conferenceCount / organizerCount
+                    + (organizer < conferenceCount % organizerCount ? 1 : 0);
+            if (count == 0) {
+                continue;
+            }
+            Iterator<Key<Conference>> ids =
+                    factory().allocateIds(profileKey, Conference.class, count).iterator();
+            for (int i = 0; i < count; i++) {
+                Key<Conference> key = ids.next();
+                Conference conference = new Conference(key.getId(), userId, newConferenceForm());
+                conference.attachOrganizer(profile);
+                batch.add(conference);
+                batch.addAll(SeatInventory.createShards(key, conference.getMaxAttendees()));
+                conferenceKeys.add(key.getString());
+                if (batch.size() >= SEED_BATCH) {
+                    ofy().save().entities(batch).now();
+                    batch.clear();
+                }
+            }
+            ofy().clear();
+        }
+        ofy().save().entities(batch).now();
+        ofy().clear();
+    }
+
+    private ConferenceForm newConferenceForm() {
+        Date startDate = new Date(START_MILLIS + random.nextInt(365) * DAY_MILLIS);
+        Date endDate = new Date(startDate.getTime() + random.nextInt(4) * DAY_MILLIS);
+        return new ConferenceForm("Conference " + random.nextInt(), "A conference.",
+                Arrays.asList(TOPICS[random.nextInt(TOPICS.length)],
+                        TOPICS[random.nextInt(TOPICS.length)]),
+                CITIES[random.nextInt(CITIES.length)], startDate, endDate,
+                100 + random.nextInt(900));
+    }
+
+    private ConferenceQueryForm newQueryForm() {
+        ConferenceQueryForm form = new ConferenceQueryForm().pageSize(20);
+        switch (random.nextInt(3)) {
+            case 0:
+                return form;
+            case 1:
+                return form.filter(new Filter(Field.CITY, Operator.EQ,
+                        CITIES[random.nextInt(CITIES.length)]));
+            default:
+                return form.filter(new Filter(Field.TOPIC, Operator.EQ,
+                        TOPICS[random.nextInt(TOPICS.length)]))
+                        .filter(new Filter(Field.MAX_ATTENDEES, Operator.GT,
+                                String.valueOf(100 * (1 + random.nextInt(8)))));
+        }
+    }
+
+    private User randomUser() {
+        return users.get(random.nextInt(users.size()));
+    }
+
+    private String randomConference() {
+        return conferenceKeys.get(random.nextInt(conferenceKeys.size()));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Timings query = new Timings("bench.queryConferences");
+        Timings register = new Timings("bench.registerForConference");
+        Timings toAttend = new Timings("bench.getConferencesToAttend");
+        Timings create = new Timings("bench.createConference");
+        for (int i = 0; i < warmups + runs; i++) {
+            boolean measured = i >= warmups;
+            // Each run starts with an empty session, as a request does.
+            ofy().clear();
+            ConferenceQueryForm queryForm = newQueryForm();
+            if (measured) {
+                query.start();
+            }
+            api.queryConferences(queryForm);
+            if (measured) {
+                query.stop();
+            }
+
+            ofy().clear();
+            User user = randomUser();
+            String conferenceKey = randomConference();
+            if (measured) {
+                register.start();
+            }
+            api.registerForConference(user, conferenceKey);
+            if (measured) {
+                register.stop();
+            }
+
+            ofy().clear();
+            if (measured) {
+                toAttend.start();
+            }
+            api.getConferencesToAttend(randomUser(), null, null);
+            if (measured) {
+                toAttend.stop();
+            }
+
+            ofy().clear();
+            ConferenceForm conferenceForm = newConferenceForm();
+            User organizer = randomUser();
+            if (measured) {
+                create.start();
+            }
+            api.createConference(organizer, conferenceForm);
+            if (measured) {
+                create.stop();
+            }
+        }
+        System.out.println(query);
+        System.out.println(register);
+        System.out.println(toAttend);
+        System.out.println(create);
+    }
+}
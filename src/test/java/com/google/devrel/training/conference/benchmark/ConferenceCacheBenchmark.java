@@ -0,0 +1,106 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.ConferenceCache;
+import com.google.devrel.training.conference.service.OrganizerHydrator;
+import com.google.devrel.training.conference.service.SeatInventory;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Read-heavy load on a few hot conferences, read from the datastore as getConference did
+ * before ConferenceCache, then through getConference and the cache.
+ *
+ * Every bench.registrationEvery reads, a registration changes the seats of the conference read,
+ * so the cached copies are invalidated as in production. Reports the datastore gets and the
+ * latency per read of both.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=ConferenceCacheBenchmark
+ */
+public class ConferenceCacheBenchmark {
+
+    private final int conferenceCount = Integer.getInteger("bench.conferences", 10);
+
+    private final int reads = Integer.getInteger("bench.runs", 3000);
+
+    private final int registrationEvery = Integer.getInteger("bench.registrationEvery", 100);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    private final List<String> conferenceKeys = new ArrayList<>();
+
+    private int registrations;
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        ApiCallCounter.install();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+        for (int i = 0; i < conferenceCount; i++) {
+            conferenceKeys.add(api.createConference(organizer, new ConferenceForm(
+                    "Conference " + i, "", null, null, null, null, 1000)).getWebsafeKey());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private void run(Timings timings, boolean cached) throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < reads; i++) {
+            String key = conferenceKeys.get(random.nextInt(conferenceKeys.size()));
+            timings.start();
+            if (cached) {
+                api.getConference(key);
+            } else {
+                Conference conference = ofy().load().key(Key.<Conference>create(key)).now();
+                OrganizerHydrator.hydrate(SeatInventory.refreshSeatsAvailable(conference));
+            }
+            timings.stop();
+            // Each read starts with an empty session, as a request does.
+            ofy().clear();
+            if (i % registrationEvery == registrationEvery - 1) {
+                registrations++;
+                api.registerForConference(new User("attendee" + registrations + "@example.com",
+                        "example.com", "attendee" + registrations), key);
+                ofy().clear();
+            }
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Timings datastore = new Timings("bench.datastoreRead");
+        Timings cache = new Timings("bench.getConference");
+        run(datastore, false);
+        run(cache, true);
+        System.out.println(datastore);
+        System.out.println(cache);
+        System.out.println(ConferenceCache.getStats());
+    }
+}
@@ -0,0 +1,90 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.api.server.spi.ConfiguredObjectMapper;
+import com.google.appengine.api.users.User;
+import com.google.appengine.repackaged.org.codehaus.jackson.map.ObjectWriter;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cost of serving a cached page of queryConferences: the call and the serialization of its
+ * result with the object mapper of Endpoints, as a response is written.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=ConferencePageBenchmark
+ */
+public class ConferencePageBenchmark {
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private final int organizers = Integer.getInteger("bench.organizers", 10);
+
+    private final int conferencesPerOrganizer = Integer.getInteger("bench.conferences", 10);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 2000);
+
+    private final int runs = Integer.getInteger("bench.runs", 2000);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        ApiCallCounter.install();
+        for (int u = 0; u < organizers; u++) {
+            User user = new User("organizer" + u + "@example.com", "example.com",
+                    "organizer" + u);
+            api.saveProfile(user, new ProfileForm("Organizer " + u, null));
+            for (int i = 0; i < conferencesPerOrganizer; i++) {
+                api.createConference(user, new ConferenceForm("Conference " + u + "-" + i,
+                        "A conference.", Arrays.asList("Web", "Cloud"), "London",
+                        new Date(START_MILLIS), new Date(START_MILLIS + 2 * 86400000L), 500));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        ObjectWriter writer = ConfiguredObjectMapper.builder().build().writer();
+        int pageSize = organizers * conferencesPerOrganizer;
+        ConferenceQueryForm form = new ConferenceQueryForm().pageSize(pageSize);
+        Timings page = new Timings("bench.cachedPage" + pageSize);
+        int bytes = 0;
+        for (int i = 0; i < warmups + runs; i++) {
+            ofy().clear();
+            if (i >= warmups) {
+                page.start();
+            }
+            bytes = writer.writeValueAsBytes(api.queryConferences(form)).length;
+            if (i >= warmups) {
+                page.stop();
+            }
+        }
+        System.out.printf("A page of %d conferences is %d KB of JSON, p90 %.3f ms%n", pageSize,
+                bytes / 1024, page.percentileNanos(90) / 1e6);
+        System.out.println(page);
+    }
+}
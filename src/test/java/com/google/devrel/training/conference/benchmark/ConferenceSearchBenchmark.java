@@ -0,0 +1,138 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.factory;
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.ConferenceSearch;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Latency of ConferenceSearch.search over a large catalog, for whole words and prefixes.
+ *
+ * The conferences are saved and indexed in batches of 200, the most a call of index() takes.
+ * The local search service scans its documents, so its latencies grow with the catalog where
+ * the production one doesn't; the datastore calls per search are the figures to compare.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=ConferenceSearchBenchmark
+ *
+ * Seeding the default catalog of 100000 conferences takes about two minutes, add
+ * -Dbench.conferences=10000 for a quicker run.
+ *
+ * The properties bench.conferences, bench.runs and bench.warmups size the catalog and the
+ * runs.
+ */
+public class ConferenceSearchBenchmark {
+
+    private static final String[] WORDS = {"kubernetes", "android", "cloud", "serverless",
+            "javascript", "security", "machine", "learning", "design", "databases", "devops",
+            "games", "robotics", "quantum", "frontend", "mobile", "streaming", "analytics"};
+
+    private static final String[] CITIES = {"London", "Chicago", "Tokyo", "San Francisco",
+            "Paris", "Berlin", "Sydney", "Toronto", "Bangalore", "Sao Paulo"};
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private static final int INDEX_BATCH = 200;
+
+    private static final int PAGE_SIZE = 20;
+
+    private final int conferenceCount = Integer.getInteger("bench.conferences", 100000);
+
+    private final int runs = Integer.getInteger("bench.runs", 300);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 100);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final Random random = new Random(1);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        ApiCallCounter.install();
+        long start = System.currentTimeMillis();
+        Profile organizer = new Profile("organizer", "Organizer", "organizer@example.com", null);
+        Key<Profile> profileKey = Key.create(Profile.class, "organizer");
+        ofy().save().entity(organizer).now();
+        Iterator<Key<Conference>> ids = factory()
+                .allocateIds(profileKey, Conference.class, conferenceCount).iterator();
+        List<Conference> batch = new ArrayList<>(INDEX_BATCH);
+        for (int i = 0; i < conferenceCount; i++) {
+            Conference conference = new Conference(ids.next().getId(), "organizer",
+                    new ConferenceForm(word() + " " + word() + " summit",
+                            "All about " + word() + " and " + word() + ".",
+                            Arrays.asList(word(), word()), CITIES[random.nextInt(CITIES.length)],
+                            new Date(START_MILLIS), new Date(START_MILLIS), 100));
+            batch.add(conference);
+            if (batch.size() == INDEX_BATCH || i == conferenceCount - 1) {
+                ofy().save().entities(batch).now();
+                ConferenceSearch.index(batch);
+                batch.clear();
+                ofy().clear();
+            }
+        }
+        System.out.printf("Saved and indexed %d conferences in %d ms%n", conferenceCount,
+                System.currentTimeMillis() - start);
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    @Test
+    public void benchmark() {
+        Timings words = new Timings("bench.searchWords");
+        Timings prefixes = new Timings("bench.searchPrefixes");
+        for (int i = 0; i < warmups + runs; i++) {
+            boolean measured = i >= warmups;
+
+            ofy().clear();
+            String search = word() + " " + word();
+            if (measured) {
+                words.start();
+            }
+            ConferenceSearch.search(search, PAGE_SIZE, null);
+            if (measured) {
+                words.stop();
+            }
+
+            ofy().clear();
+            search = word().substring(0, 3) + " " + CITIES[random.nextInt(CITIES.length)]
+                    .substring(0, 4);
+            if (measured) {
+                prefixes.start();
+            }
+            ConferenceSearch.search(search, PAGE_SIZE, null);
+            if (measured) {
+                prefixes.stop();
+            }
+        }
+        System.out.println(words);
+        System.out.println(prefixes);
+    }
+}
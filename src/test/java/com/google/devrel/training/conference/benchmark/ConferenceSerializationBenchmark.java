@@ -0,0 +1,93 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.api.server.spi.ConfiguredObjectMapper;
+import com.google.appengine.repackaged.org.codehaus.jackson.map.ObjectWriter;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceForm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cost of the Conference dates: serializing a large page of Conferences with the object mapper
+ * of Endpoints, and creating Conferences from forms, where the month is derived.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=ConferenceSerializationBenchmark
+ */
+public class ConferenceSerializationBenchmark {
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private static final long HOUR_MILLIS = 3600 * 1000;
+
+    private final int pageSize = Integer.getInteger("bench.pageSize", 10000);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 30);
+
+    private final int runs = Integer.getInteger("bench.runs", 50);
+
+    private final int creations = Integer.getInteger("bench.creations", 100000);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        List<Conference> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Date startDate = new Date(START_MILLIS + i * HOUR_MILLIS);
+            Date endDate = new Date(startDate.getTime() + 48 * HOUR_MILLIS);
+            page.add(new Conference(i + 1, "organizer" + i % 50, new ConferenceForm(
+                    "Conference " + i, "A conference.", Arrays.asList("Web", "Cloud"), "London",
+                    startDate, endDate, 500)));
+        }
+        ObjectWriter writer = ConfiguredObjectMapper.builder().build().writer();
+        Timings serialize = new Timings("bench.serialize" + pageSize);
+        int bytes = 0;
+        for (int i = 0; i < warmups + runs; i++) {
+            if (i >= warmups) {
+                serialize.start();
+            }
+            bytes = writer.writeValueAsBytes(page).length;
+            if (i >= warmups) {
+                serialize.stop();
+            }
+        }
+
+        Timings create = new Timings("bench.create" + creations);
+        for (int i = 0; i < warmups + runs / 5; i++) {
+            if (i >= warmups) {
+                create.start();
+            }
+            for (int j = 0; j < creations; j++) {
+                new Conference(j + 1, "organizer", new ConferenceForm("Conference", "", null,
+                        null, new Date(START_MILLIS + j * HOUR_MILLIS), null, 5));
+            }
+            if (i >= warmups) {
+                create.stop();
+            }
+        }
+        System.out.printf("A page of %d Conferences is %d KB of JSON%n", pageSize, bytes / 1024);
+        System.out.println(serialize);
+        System.out.println(create);
+    }
+}
@@ -0,0 +1,158 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.factory;
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.NearbyConferences;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Latency of NearbyConferences.find as the catalog grows around a fixed density of
+ * conferences near the searched points.
+ *
+ * A cluster of conferences is seeded around each city once, then the catalog is grown with
+ * conferences spread over the globe and the same searches are measured at each size. The
+ * datastore calls should stay flat, a query only reading the cells around the point. The local
+ * datastore scans its entities to answer a query, so its latencies grow with the catalog where
+ * the production one doesn't.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=NearbyConferencesBenchmark -Dbench.sizes=1000,10000,100000
+ *
+ * The properties bench.sizes, bench.cluster, bench.radiusKm, bench.runs and bench.warmups
+ * size the catalogs, the clusters and the runs.
+ */
+public class NearbyConferencesBenchmark {
+
+    private static final double[][] CITIES = {{51.51, -0.13}, {41.88, -87.63}, {35.68, 139.69},
+            {37.77, -122.42}, {48.86, 2.35}, {52.52, 13.40}, {-33.87, 151.21}, {43.65, -79.38}};
+
+    /**
+     * The spread of the clusters around their city, in degrees.
+     */
+    private static final double CLUSTER_SPREAD = 0.5;
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private static final int SEED_BATCH = 500;
+
+    private static final int LIMIT = 20;
+
+    private final String[] sizes = System.getProperty("bench.sizes", "1000,10000,30000")
+            .split(",");
+
+    private final int clusterSize = Integer.getInteger("bench.cluster", 100);
+
+    private final double radiusKm = Double.parseDouble(System.getProperty("bench.radiusKm", "50"));
+
+    private final int runs = Integer.getInteger("bench.runs", 300);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 100);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final Random random = new Random(1);
+
+    private Key<Profile> organizerKey;
+
+    private int conferenceCount;
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        ApiCallCounter.install();
+        organizerKey = Key.create(Profile.class, "organizer");
+        ofy().save().entity(new Profile("organizer", "Organizer", "organizer@example.com", null))
+                .now();
+        List<double[]> locations = new ArrayList<>();
+        for (double[] city : CITIES) {
+            for (int i = 0; i < clusterSize; i++) {
+                locations.add(new double[] {
+                        city[0] + (random.nextDouble() - 0.5) * CLUSTER_SPREAD,
+                        city[1] + (random.nextDouble() - 0.5) * CLUSTER_SPREAD});
+            }
+        }
+        seed(locations);
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    /**
+     * Saves conferences at the given locations, bypassing the API.
+     */
+    private void seed(List<double[]> locations) {
+        Iterator<Key<Conference>> ids = factory()
+                .allocateIds(organizerKey, Conference.class, locations.size()).iterator();
+        List<Conference> batch = new ArrayList<>(SEED_BATCH);
+        for (double[] location : locations) {
+            batch.add(new Conference(ids.next().getId(), "organizer",
+                    new ConferenceForm("Conference", null, null, null, new Date(START_MILLIS),
+                            new Date(START_MILLIS), 100).location(location[0], location[1])));
+            if (batch.size() == SEED_BATCH) {
+                ofy().save().entities(batch).now();
+                batch.clear();
+            }
+        }
+        ofy().save().entities(batch).now();
+        ofy().clear();
+        conferenceCount += locations.size();
+    }
+
+    /**
+     * Grows the catalog to the given size with conferences spread uniformly over the globe.
+     */
+    private void growTo(int size) {
+        List<double[]> locations = new ArrayList<>();
+        for (int i = conferenceCount; i < size; i++) {
+            locations.add(new double[] {
+                    Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                    360 * random.nextDouble() - 180});
+        }
+        seed(locations);
+    }
+
+    @Test
+    public void benchmark() {
+        for (String size : sizes) {
+            growTo(Integer.parseInt(size.trim()));
+            Timings find = new Timings("bench.nearby." + conferenceCount);
+            int found = 0;
+            for (int i = 0; i < warmups + runs; i++) {
+                boolean measured = i >= warmups;
+                ofy().clear();
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                if (measured) {
+                    find.start();
+                }
+                List<Conference> conferences =
+                        NearbyConferences.find(city[0], city[1], radiusKm, LIMIT);
+                if (measured) {
+                    find.stop();
+                    found += conferences.size();
+                }
+            }
+            System.out.println(find + String.format("  found %.1f", (double) found / runs));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.factory;
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.OrganizerHydrator;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Datastore calls of attaching the organizers to a page of conferences: one get per
+ * conference, as getOrganizerDisplayName did, against the batch of OrganizerHydrator.
+ *
+ * Each run loads a page of conferences of distinct organizers in one batch get, then attaches
+ * their organizers. OrganizerHydrator reads them through the ProfileCache, whose instance tier
+ * is warm after the first runs, as it is on a serving instance.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=OrganizerHydrationBenchmark -Dbench.organizers=5000 -Dbench.pageSize=100
+ *
+ * The properties bench.organizers, bench.pageSize, bench.runs and bench.warmups size the
+ * catalog and the runs.
+ */
+public class OrganizerHydrationBenchmark {
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private final int organizerCount = Integer.getInteger("bench.organizers", 1000);
+
+    private final int pageSize = Integer.getInteger("bench.pageSize", 20);
+
+    private final int runs = Integer.getInteger("bench.runs", 500);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 100);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final Random random = new Random(1);
+
+    private final List<Key<Conference>> conferenceKeys = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        ApiCallCounter.install();
+        List<Object> batch = new ArrayList<>();
+        for (int i = 0; i < organizerCount; i++) {
+            String userId = "organizer" + i;
+            Profile profile = new Profile(userId, "Organizer " + i, userId + "@example.com",
+                    null);
+            Key<Profile> profileKey = Key.create(Profile.class, userId);
+            Key<Conference> key = factory().allocateId(profileKey, Conference.class);
+            Conference conference = new Conference(key.getId(), userId, new ConferenceForm(
+                    "Conference " + i, null, null, "London", new Date(START_MILLIS),
+                    new Date(START_MILLIS), 100));
+            batch.add(profile);
+            batch.add(conference);
+            conferenceKeys.add(key);
+        }
+        ofy().save().entities(batch).now();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private List<Key<Conference>> randomPage() {
+        Collections.shuffle(conferenceKeys, random);
+        return new ArrayList<>(conferenceKeys.subList(0, pageSize));
+    }
+
+    @Test
+    public void benchmark() {
+        Timings perConference = new Timings("bench.perConferenceGets");
+        Timings batched = new Timings("bench.organizerHydrator");
+        for (int i = 0; i < warmups + runs; i++) {
+            boolean measured = i >= warmups;
+
+            ofy().clear();
+            List<Key<Conference>> page = randomPage();
+            if (measured) {
+                perConference.start();
+            }
+            for (Conference conference : ofy().load().keys(page).values()) {
+                conference.attachOrganizer(ofy().load()
+                        .key(Key.create(Profile.class, conference.getOrganizerUserId())).now());
+            }
+            if (measured) {
+                perConference.stop();
+            }
+
+            ofy().clear();
+            page = randomPage();
+            if (measured) {
+                batched.start();
+            }
+            OrganizerHydrator.hydrate(ofy().load().keys(page).values());
+            if (measured) {
+                batched.stop();
+            }
+        }
+        System.out.println(perConference);
+        System.out.println(batched);
+    }
+}
@@ -0,0 +1,128 @@
+package com.google.devrel.training.conference.benchmark;
+
+import com.google.devrel.training.conference.service.RequestStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Latency, allocation and API calls of the runs of one measured operation, on one thread.
+ *
+ * Each run is scoped in RequestStats under the name of the operation, so the datastore and
+ * memcache calls counted by ApiCallCounter, once installed, are attributed to it.
+ */
+public class Timings {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final boolean COUNTS_ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean;
+
+    private final String name;
+
+    private long[] nanos = new long[1024];
+
+    private int runs;
+
+    private long allocatedBytes;
+
+    private long startNanos;
+
+    private long startAllocatedBytes;
+
+    /**
+     * @param name the name of the operation, unique within the JVM.
+     */
+    public Timings(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts a run, on the thread that stops it.
+     */
+    public void start() {
+        RequestStats.beginRequest(name);
+        startAllocatedBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stops the run started last.
+     */
+    public void stop() {
+        long elapsed = System.nanoTime() - startNanos;
+        allocatedBytes += allocatedBytes() - startAllocatedBytes;
+        RequestStats.endRequest(elapsed / 1000000);
+        if (runs == nanos.length) {
+            nanos = Arrays.copyOf(nanos, runs * 2);
+        }
+        nanos[runs++] = elapsed;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, 0 when the JVM doesn't tell.
+     */
+    private static long allocatedBytes() {
+        if (COUNTS_ALLOCATIONS) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * Returns the latency of the given percentile of the runs.
+     *
+     * @param percent the percentile, e.g. 99.
+     * @return the latency, in nanoseconds.
+     */
+    public long percentileNanos(int percent) {
+        long[] sorted = Arrays.copyOf(nanos, runs);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (runs * percent + 99) / 100 - 1)];
+    }
+
+    /**
+     * Returns the number of runs per second of measured time.
+     */
+    public double throughput() {
+        long total = 0;
+        for (int i = 0; i < runs; i++) {
+            total += nanos[i];
+        }
+        return runs * 1e9 / total;
+    }
+
+    /**
+     * Returns the average of the given RequestStats counter per run.
+     *
+     * @param counter the name of the counter, e.g. "datastoreGets".
+     * @return the calls per run.
+     */
+    public double perRun(String counter) {
+        Map<String, Long> stats = RequestStats.getStats();
+        Long count = stats.get(name + "." + counter);
+        return count == null ? 0 : (double) count / runs;
+    }
+
+    /**
+     * Returns a one-line report of the runs.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-28s %6d runs %9.1f ops/s  p50 %8.3f ms  p99 %8.3f ms  "
+                + "%8.1f KB/op  gets %.2f  puts %.2f  queries %.2f  nexts %.2f  "
+                + "commits %.2f  memcache hits %.2f  misses %.2f",
+                name, runs, throughput(), percentileNanos(50) / 1e6, percentileNanos(99) / 1e6,
+                COUNTS_ALLOCATIONS ? allocatedBytes / 1024.0 / runs : Double.NaN,
+                perRun("datastoreGets"), perRun("datastorePuts"), perRun("datastoreQueries"),
+                perRun("datastoreNexts"), perRun("datastoreCommits"), perRun("memcacheHits"),
+                perRun("memcacheMisses"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.google.devrel.training.conference.benchmark;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.AppEngineUser;
+import com.google.devrel.training.conference.service.ApiCallCounter;
+import com.google.devrel.training.conference.service.UserIdResolver;
+import com.googlecode.objectify.Objectify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cost of finding the userId of a User injected without one: the save of an AppEngineUser
+ * and its reload through a fresh session that every call of getUserId did, against
+ * UserIdResolver.
+ *
+ * The local datastore doesn't fill in the userId of the stored Users, so the AppEngineUsers
+ * are seeded with theirs, as the production datastore would have stored them. The first call
+ * for each user reads it from the datastore, the later ones hit the caches of UserIdResolver.
+ *
+ * Not run by the build. Run it with
+ *
+ *   mvn test -Dtest=UserIdResolverBenchmark -Dbench.users=10000
+ *
+ * The properties bench.users, bench.runs and bench.warmups size the users and the runs.
+ */
+public class UserIdResolverBenchmark {
+
+    private final int userCount = Integer.getInteger("bench.users", 1000);
+
+    private final int runs = Integer.getInteger("bench.runs", 2000);
+
+    private final int warmups = Integer.getInteger("bench.warmups", 500);
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final Random random = new Random(1);
+
+    private final List<User> users = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        ApiCallCounter.install();
+        List<AppEngineUser> appEngineUsers = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            String email = "user" + i + "@example.com";
+            appEngineUsers.add(new AppEngineUser(new User(email, "example.com", "id" + i)));
+            users.add(new User(email, "example.com"));
+        }
+        ofy().save().entities(appEngineUsers).now();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void benchmark() {
+        Timings saveAndReload = new Timings("bench.saveAndReload");
+        Timings resolver = new Timings("bench.userIdResolver");
+        for (int i = 0; i < warmups + runs; i++) {
+            boolean measured = i >= warmups;
+
+            ofy().clear();
+            // A user of its own, so the seeded AppEngineUsers keep their userId.
+            User user = new User("other" + random.nextInt(userCount) + "@example.com",
+                    "example.com");
+            if (measured) {
+                saveAndReload.start();
+            }
+            AppEngineUser appEngineUser = new AppEngineUser(user);
+            ofy().save().entity(appEngineUser).now();
+            Objectify objectify = ofy().factory().begin();
+            objectify.load().key(appEngineUser.getKey()).now().getUser().getUserId();
+            if (measured) {
+                saveAndReload.stop();
+            }
+
+            ofy().clear();
+            user = users.get(random.nextInt(userCount));
+            if (measured) {
+                resolver.start();
+            }
+            UserIdResolver.resolve(user);
+            if (measured) {
+                resolver.stop();
+            }
+        }
+        System.out.println(saveAndReload);
+        System.out.println(resolver);
+    }
+}
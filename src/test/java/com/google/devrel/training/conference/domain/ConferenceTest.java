@@ -0,0 +1,99 @@
+package com.google.devrel.training.conference.domain;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.service.ConferenceCache;
+import com.googlecode.objectify.Key;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the storage of the Conference dates.
+ */
+public class ConferenceTest {
+
+    private static final long START_MILLIS = 1790000000000L;
+
+    private static final long END_MILLIS = START_MILLIS + 2 * 24 * 3600 * 1000;
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private static Conference conference(Date startDate, Date endDate) {
+        return new Conference(1, "organizer", new ConferenceForm("Conference", "", null, null,
+                startDate, endDate, 10));
+    }
+
+    @Test
+    public void testDatesAreSavedAsMillis() {
+        Conference conference = conference(new Date(START_MILLIS), new Date(END_MILLIS));
+        Entity entity = ofy().save().toEntity(conference);
+        assertEquals(START_MILLIS, entity.getProperty("startMillis"));
+        assertEquals(END_MILLIS, entity.getProperty("endMillis"));
+        assertFalse(entity.hasProperty("startDate"));
+
+        Conference loaded = ofy().load().fromEntity(entity);
+        assertEquals(START_MILLIS, loaded.getStartMillis());
+        assertEquals(END_MILLIS, loaded.getEndMillis());
+        assertEquals(new Date(START_MILLIS), loaded.getStartDate());
+    }
+
+    @Test
+    public void testMissingDatesAreNotSaved() {
+        Conference conference = conference(null, null);
+        Entity entity = ofy().save().toEntity(conference);
+        assertFalse(entity.hasProperty("startMillis"));
+        assertFalse(entity.hasProperty("endMillis"));
+
+        Conference loaded = ofy().load().fromEntity(entity);
+        assertEquals(Conference.NO_DATE, loaded.getStartMillis());
+        assertNull(loaded.getStartDate());
+        assertNull(loaded.getEndDate());
+        assertTrue(loaded.toString().indexOf("StartDate") < 0);
+    }
+
+    @Test
+    public void testDatesSavedAsDatesAreRead() {
+        Conference conference = conference(null, null);
+        Entity entity = ofy().save().toEntity(conference);
+        entity.setProperty("startDate", new Date(START_MILLIS));
+        entity.setProperty("endDate", new Date(END_MILLIS));
+        DatastoreServiceFactory.getDatastoreService().put(entity);
+        Key<Conference> key = Key.create(entity.getKey());
+
+        Conference loaded = ofy().load().key(key).now();
+        assertEquals(START_MILLIS, loaded.getStartMillis());
+        assertEquals(END_MILLIS, loaded.getEndMillis());
+        ofy().clear();
+        // The cache keeps entities and reads them without the lifecycle callbacks.
+        assertEquals(START_MILLIS, ConferenceCache.get(key).getStartMillis());
+
+        // Saving it again moves the dates to the new properties.
+        Entity saved = ofy().save().toEntity(loaded);
+        assertEquals(START_MILLIS, saved.getProperty("startMillis"));
+        assertFalse(saved.hasProperty("startDate"));
+    }
+}
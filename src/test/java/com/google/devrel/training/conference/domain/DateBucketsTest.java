@@ -0,0 +1,49 @@
+package com.google.devrel.training.conference.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Tests of the civil-date computations of DateBuckets against Calendar.
+ */
+public class DateBucketsTest {
+
+    private static final long YEAR_MILLIS = 365L * 24 * 3600 * 1000;
+
+    @Test
+    public void testMonthMatchesCalendar() {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(1);
+        for (int i = 0; i < 2000000; i++) {
+            // From 1770 to 2170, across leap and non-leap centuries.
+            long millis = (long) ((random.nextDouble() - 0.5) * 400 * YEAR_MILLIS);
+            calendar.setTimeInMillis(millis);
+            assertEquals("At " + millis, calendar.get(Calendar.MONTH) + 1,
+                    DateBuckets.monthOf(millis));
+        }
+    }
+
+    @Test
+    public void testMonthAtTheBoundaries() {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(2024, Calendar.FEBRUARY, 29);
+        assertEquals(2, DateBuckets.monthOf(calendar.getTimeInMillis()));
+        assertEquals(3, DateBuckets.monthOf(calendar.getTimeInMillis() + 24 * 3600 * 1000));
+        assertEquals(1, DateBuckets.monthOf(0));
+        assertEquals(12, DateBuckets.monthOf(-1));
+    }
+
+    @Test
+    public void testDayMatchesTheEpochDay() {
+        assertEquals(0, DateBuckets.dayOf(0));
+        assertEquals(-1, DateBuckets.dayOf(-1));
+        assertEquals(1, DateBuckets.dayOf(24 * 3600 * 1000));
+    }
+}
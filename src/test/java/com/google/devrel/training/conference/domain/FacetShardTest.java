@@ -0,0 +1,52 @@
+package com.google.devrel.training.conference.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of the updates of the facet counts, which are applied once per update name.
+ */
+public class FacetShardTest {
+
+    private static Map<String, Integer> delta(String value, int delta) {
+        return Collections.singletonMap(value, delta);
+    }
+
+    @Test
+    public void testRetriedUpdatesAreSkipped() {
+        FacetShard shard = new FacetShard(0);
+        assertTrue(shard.apply("update-1", delta("city:London", 2)));
+        assertFalse(shard.apply("update-1", delta("city:London", 2)));
+        assertTrue(shard.apply("update-2", delta("city:London", 1)));
+
+        assertEquals(Long.valueOf(3), shard.getCounts().get("city:London"));
+    }
+
+    @Test
+    public void testCountsDownToZeroAreRemoved() {
+        FacetShard shard = new FacetShard(0);
+        shard.apply("update-1", delta("topic:Web", 1));
+        shard.apply("update-2", delta("topic:Web", -1));
+
+        assertFalse(shard.getCounts().containsKey("topic:Web"));
+    }
+
+    @Test
+    public void testOnlyTheLastHundredUpdatesAreRemembered() {
+        FacetShard shard = new FacetShard(0);
+        for (int i = 0; i <= 100; i++) {
+            shard.apply("update-" + i, delta("month:6", 1));
+        }
+        assertFalse(shard.apply("update-1", delta("month:6", 1)));
+        // The oldest name was forgotten, a retry that late is applied again.
+        assertTrue(shard.apply("update-0", delta("month:6", 1)));
+
+        assertEquals(Long.valueOf(102), shard.getCounts().get("month:6"));
+    }
+}
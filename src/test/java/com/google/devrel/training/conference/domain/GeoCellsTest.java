@@ -0,0 +1,35 @@
+package com.google.devrel.training.conference.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the order of the cells looked up by the proximity queries.
+ */
+public class GeoCellsTest {
+
+    @Test
+    public void testCenterCellComesFirst() {
+        double latitude = 48.8566;
+        double longitude = 2.3522;
+        List<String> cells = new ArrayList<>(GeoCells.coveringCells(latitude, longitude, 5));
+        assertEquals(9, cells.size());
+        assertTrue(GeoCells.encode(latitude, longitude, GeoCells.MAX_PRECISION)
+                .startsWith(cells.get(0)));
+    }
+
+    @Test
+    public void testClosestNeighborComesSecond() {
+        // Cells of precision 4 are about 39 km wide and 19.5 km high at the equator.
+        double height = 180 / Math.pow(2, 10);
+        double latitude = height - 0.001;
+        List<String> cells = new ArrayList<>(GeoCells.coveringCells(latitude, 20, 15));
+        assertEquals(GeoCells.encode(latitude, 20, 4), cells.get(0));
+        assertEquals(GeoCells.encode(latitude + 0.002, 20, 4), cells.get(1));
+    }
+}
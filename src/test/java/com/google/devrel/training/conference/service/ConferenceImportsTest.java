@@ -0,0 +1,113 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.FacetCounts;
+import com.google.devrel.training.conference.domain.ImportJob;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.googlecode.objectify.Key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the retries of the import batches, which must not duplicate anything.
+ */
+public class ConferenceImportsTest {
+
+    private static final int RECORDS = 3;
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+        ofy().save().entity(new Profile("organizer", "Organizer", "organizer@example.com", null))
+                .now();
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private static ImportJob start() {
+        List<ConferenceForm> records = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(new ConferenceForm("Conference " + i, "", Arrays.asList("Web"), "London",
+                    null, null, 10));
+        }
+        return ConferenceImports.start("organizer", records);
+    }
+
+    private static List<Long> conferenceIds() {
+        ofy().clear();
+        List<Long> ids = new ArrayList<>();
+        for (Key<Conference> key : ofy().load().type(Conference.class).keys()) {
+            ids.add(key.getId());
+        }
+        return ids;
+    }
+
+    private static long londonCount() {
+        for (FacetCounts.Count count : Facets.get().getCities()) {
+            if ("London".equals(count.getValue())) {
+                return count.getCount();
+            }
+        }
+        return 0;
+    }
+
+    private static int pendingEmails() {
+        return LocalTaskQueueTestConfig.getLocalTaskQueue().getQueueStateInfo()
+                .get("confirmation-email").getCountTasks();
+    }
+
+    @Test
+    public void testBatchRetriedBeforeCompletingDuplicatesNothing() {
+        ImportJob job = start();
+        // The state of the job while the batch runs, as a task failing midway leaves it.
+        Entity running = ofy().save().toEntity(ofy().load().key(job.getKey()).now());
+
+        ConferenceImports.importBatch(job.getId(), 0);
+        List<Long> ids = conferenceIds();
+        DatastoreServiceFactory.getDatastoreService().put(running);
+        ofy().clear();
+        ConferenceImports.importBatch(job.getId(), 0);
+
+        assertEquals(ids, conferenceIds());
+        assertEquals(RECORDS, ids.size());
+        assertEquals(RECORDS, londonCount());
+        assertEquals(RECORDS, pendingEmails());
+        ImportJob done = ofy().load().key(job.getKey()).now();
+        assertTrue(done.isDone());
+        assertEquals(RECORDS, done.getImported());
+    }
+
+    @Test
+    public void testCompletedBatchIsSkipped() {
+        ImportJob job = start();
+        ConferenceImports.importBatch(job.getId(), 0);
+        ConferenceImports.importBatch(job.getId(), 0);
+
+        assertEquals(RECORDS, conferenceIds().size());
+        assertEquals(RECORDS, londonCount());
+        assertEquals(RECORDS, pendingEmails());
+        assertEquals(RECORDS, ofy().load().key(job.getKey()).now().getImported());
+    }
+}
@@ -0,0 +1,110 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+import com.googlecode.objectify.Key;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Tests that WEB-INF/datastore-indexes.xml is generated and covers the queries of the app.
+ */
+public class ConferenceIndexesTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(true);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    private final User attendee = new User("attendee@example.com", "example.com", "attendee");
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+        api.saveProfile(attendee, new ProfileForm("Attendee", null));
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    @Test
+    public void testManifestIsGenerated() throws Exception {
+        String manifest = new String(Files.readAllBytes(
+                new File("src/main/webapp/WEB-INF/datastore-indexes.xml").toPath()),
+                StandardCharsets.UTF_8);
+        assertEquals(ConferenceIndexes.toXml(), manifest);
+    }
+
+    @Test
+    public void testConferenceQueriesAreCovered() throws Exception {
+        Date start = new Date(1790000000000L);
+        for (int i = 0; i < 3; i++) {
+            api.createConference(organizer, new ConferenceForm("Conference " + i, "",
+                    Arrays.asList("Web", "Cloud"), "London", start,
+                    new Date(start.getTime() + i * DAY), 10 + i).location(51.5, -0.1));
+        }
+        Filter city = new Filter(Field.CITY, Operator.EQ, "London");
+        Filter topic = new Filter(Field.TOPIC, Operator.EQ, "Web");
+        Filter maxAttendees = new Filter(Field.MAX_ATTENDEES, Operator.GT, "10");
+        Filter month = new Filter(Field.MONTH, Operator.LT, "12");
+
+        assertEquals(3, query(new ConferenceQueryForm()));
+        assertEquals(3, query(new ConferenceQueryForm().filter(city).filter(topic)));
+        assertEquals(2, query(new ConferenceQueryForm().filter(city).filter(maxAttendees)));
+        assertEquals(2, query(new ConferenceQueryForm().filter(topic).filter(maxAttendees)
+                .filter(month)));
+        assertEquals(3, query(new ConferenceQueryForm().filter(city)
+                .dateRange(start, new Date(start.getTime() + 2 * DAY))));
+        assertEquals(3, query(new ConferenceQueryForm().filter(topic)
+                .dateRange(start, new Date(start.getTime() + 60 * DAY))));
+        assertEquals(3, api.getConferencesCreated(organizer, null, null).getItems().size());
+        assertEquals(3, api.nearbyConferences(51.5, -0.1, 10, null).getItems().size());
+    }
+
+    @Test
+    public void testWaitlistQueryIsCovered() throws Exception {
+        Conference conference = api.createConference(organizer,
+                new ConferenceForm("Full", "", null, null, null, null, 1));
+        String websafeKey = conference.getWebsafeKey();
+        api.registerForConference(organizer, websafeKey);
+        api.joinWaitlist(attendee, websafeKey);
+        api.unregisterFromConference(organizer, websafeKey);
+
+        ofy().clear();
+        assertEquals(1, Waitlists.promote(
+                ofy().load().key(Key.<Conference>create(websafeKey)).now()));
+        assertTrue(Registrations.isRegistered("attendee", websafeKey));
+    }
+
+    private int query(ConferenceQueryForm form) throws Exception {
+        return api.queryConferences(form).getItems().size();
+    }
+}
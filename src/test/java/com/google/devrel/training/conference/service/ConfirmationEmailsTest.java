@@ -0,0 +1,71 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.devrel.training.conference.LocalServices;
+
+import java.util.List;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the drains of the confirmation e-mails.
+ */
+public class ConfirmationEmailsTest {
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        ConfirmationEmails.setTransport(ConfirmationEmails.MAIL_SERVICE);
+        helper.tearDown();
+    }
+
+    @Test
+    public void testFailedEmailSchedulesARetry() {
+        ConfirmationEmails.setTransport(new ConfirmationEmails.MailTransport() {
+            @Override
+            public void send(Message message) throws MessagingException {
+                throw new MessagingException("Unavailable");
+            }
+        });
+        ConfirmationEmails.enqueue(null, "organizer@example.com", "Subject", "Text");
+        long start = System.currentTimeMillis();
+
+        assertEquals(0, ConfirmationEmails.sendPending());
+
+        List<QueueStateInfo.TaskStateInfo> kicks = defaultQueue().getTaskInfo();
+        assertEquals(1, kicks.size());
+        assertTrue(kicks.get(0).getTaskName().startsWith("email-retry-"));
+        // The first retry is due after the minimal backoff of 10 seconds.
+        assertTrue(kicks.get(0).getEtaMillis() >= start + 10000);
+    }
+
+    @Test
+    public void testSentEmailsScheduleNothing() {
+        ConfirmationEmails.setTransport(ConfirmationEmails.FAKE);
+        ConfirmationEmails.enqueue(null, "organizer@example.com", "Subject", "Text");
+
+        assertEquals(1, ConfirmationEmails.sendPending());
+
+        assertEquals(0, defaultQueue().getCountTasks());
+    }
+
+    private static QueueStateInfo defaultQueue() {
+        return LocalTaskQueueTestConfig.getLocalTaskQueue().getQueueStateInfo().get("default");
+    }
+}
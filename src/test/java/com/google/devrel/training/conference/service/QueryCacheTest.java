@@ -0,0 +1,69 @@
+package com.google.devrel.training.conference.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.ConferencePage;
+import com.google.devrel.training.conference.domain.ConferenceSnapshot;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the invalidation of the cached pages of queryConferences.
+ */
+public class QueryCacheTest {
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    @Before
+    public void setUp() {
+        helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        helper.tearDown();
+    }
+
+    private static ConferenceQueryForm londonForm() {
+        return new ConferenceQueryForm()
+                .filter(new Filter(Field.CITY, Operator.EQ, "London"));
+    }
+
+    @Test
+    public void testKeyIsStableUntilInvalidated() {
+        assertEquals(QueryCache.cacheKey(londonForm()), QueryCache.cacheKey(londonForm()));
+    }
+
+    @Test
+    public void testDisplayNameChangeInvalidatesEveryPage() {
+        String londonKey = QueryCache.cacheKey(londonForm());
+        String allKey = QueryCache.cacheKey(new ConferenceQueryForm());
+        ConferencePage page =
+                new ConferencePage(Collections.<ConferenceSnapshot>emptyList(), null);
+        QueryCache.put(londonKey, page);
+        QueryCache.put(allKey, page);
+        assertNotNull(QueryCache.get(londonKey));
+
+        QueryCache.invalidateOrganizers();
+
+        String newLondonKey = QueryCache.cacheKey(londonForm());
+        String newAllKey = QueryCache.cacheKey(new ConferenceQueryForm());
+        assertFalse(londonKey.equals(newLondonKey));
+        assertFalse(allKey.equals(newAllKey));
+        assertNull(QueryCache.get(newLondonKey));
+        assertNull(QueryCache.get(newAllKey));
+    }
+}
@@ -0,0 +1,144 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.response.ConflictException;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+import com.googlecode.objectify.Key;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the sharded seat inventory: booking across the shards and resizing them.
+ */
+public class SeatInventoryTest {
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private Conference createConference(int maxAttendees) throws Exception {
+        return api.createConference(organizer,
+                new ConferenceForm("Conference", "", null, null, null, null, maxAttendees));
+    }
+
+    private static User attendee(int i) {
+        return new User("attendee" + i + "@example.com", "example.com", "attendee" + i);
+    }
+
+    private static List<SeatShard> shards(Conference conference) {
+        ofy().clear();
+        return SeatInventory.loadShards(conference);
+    }
+
+    private static int capacity(List<SeatShard> shards) {
+        int capacity = 0;
+        for (SeatShard shard : shards) {
+            capacity += shard.getCapacity();
+        }
+        return capacity;
+    }
+
+    @Test
+    public void testShardsSplitTheCapacityEvenly() {
+        Key<Conference> conferenceKey = Key.create(Conference.class, 1);
+        List<SeatShard> shards = SeatInventory.createShards(conferenceKey, 45);
+        assertEquals(SeatInventory.SHARD_COUNT, shards.size());
+        assertEquals(45, capacity(shards));
+        for (SeatShard shard : shards) {
+            assertTrue(shard.getCapacity() == 2 || shard.getCapacity() == 3);
+            assertEquals(shard.getCapacity(), shard.getSeatsAvailable());
+        }
+    }
+
+    @Test
+    public void testBookingSellsEverySeatOfEveryShard() throws Exception {
+        Conference conference = createConference(25);
+        String key = conference.getWebsafeKey();
+        for (int i = 0; i < 25; i++) {
+            assertTrue(api.registerForConference(attendee(i), key).getResult());
+        }
+        try {
+            api.registerForConference(attendee(25), key);
+            fail("The conference is sold out.");
+        } catch (ConflictException e) {
+            // Expected.
+        }
+        List<SeatShard> shards = shards(conference);
+        assertEquals(0, SeatInventory.countSeatsAvailable(shards));
+        assertEquals(25, capacity(shards));
+        assertEquals(0, api.getConference(key).getSeatsAvailable());
+    }
+
+    @Test
+    public void testUnregisteringGivesTheSeatBack() throws Exception {
+        Conference conference = createConference(1);
+        String key = conference.getWebsafeKey();
+        assertTrue(api.registerForConference(attendee(0), key).getResult());
+        assertTrue(api.unregisterFromConference(attendee(0), key).getResult());
+        assertFalse(api.unregisterFromConference(attendee(0), key).getResult());
+        assertTrue(api.registerForConference(attendee(1), key).getResult());
+        assertEquals(0, SeatInventory.countSeatsAvailable(shards(conference)));
+    }
+
+    @Test
+    public void testResizeUp() throws Exception {
+        Conference conference = createConference(10);
+        assertTrue(SeatInventory.resize(conference, 47));
+        List<SeatShard> shards = shards(conference);
+        assertEquals(47, capacity(shards));
+        assertEquals(47, SeatInventory.countSeatsAvailable(shards));
+    }
+
+    @Test
+    public void testResizeDownKeepsTheBookedSeats() throws Exception {
+        Conference conference = createConference(40);
+        String key = conference.getWebsafeKey();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(api.registerForConference(attendee(i), key).getResult());
+        }
+        // Only 30 seats are free, the resize is rolled back.
+        assertFalse(SeatInventory.resize(conference, 5));
+        List<SeatShard> shards = shards(conference);
+        assertEquals(40, capacity(shards));
+        assertEquals(30, SeatInventory.countSeatsAvailable(shards));
+
+        assertTrue(SeatInventory.resize(conference, 10));
+        shards = shards(conference);
+        assertEquals(10, capacity(shards));
+        assertEquals(0, SeatInventory.countSeatsAvailable(shards));
+        for (SeatShard shard : shards) {
+            assertTrue(shard.getSeatsAvailable() >= 0);
+            assertTrue(shard.getSeatsAvailable() <= shard.getCapacity());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.google.devrel.training.conference.service;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.response.ConflictException;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.domain.WaitlistEntry;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.spi.ConferenceApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the promotion of the waitlists.
+ */
+public class WaitlistsTest {
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private Conference createConference(int maxAttendees) throws Exception {
+        return api.createConference(organizer,
+                new ConferenceForm("Conference", "", null, null, null, null, maxAttendees));
+    }
+
+    private static User attendee(int i) {
+        return new User("attendee" + i + "@example.com", "example.com", "attendee" + i);
+    }
+
+    /**
+     * Puts the given attendee on the waitlist, as if joined at the given time.
+     */
+    private void joinWaitlist(Conference conference, int attendee, long joinedAt)
+            throws Exception {
+        api.saveProfile(attendee(attendee), new ProfileForm("Attendee " + attendee, null));
+        ofy().save().entity(new WaitlistEntry(attendee(attendee).getUserId(),
+                conference.getWebsafeKey(), joinedAt)).now();
+    }
+
+    private static boolean isRegistered(Conference conference, int attendee) {
+        return Registrations.isRegistered(attendee(attendee).getUserId(),
+                conference.getWebsafeKey());
+    }
+
+    private static int promote(Conference conference) {
+        ofy().clear();
+        return Waitlists.promote(conference);
+    }
+
+    @Test
+    public void testUsersArePromotedInTheOrderTheyJoined() throws Exception {
+        Conference conference = createConference(2);
+        api.registerForConference(attendee(0), conference.getWebsafeKey());
+        api.registerForConference(attendee(1), conference.getWebsafeKey());
+        joinWaitlist(conference, 3, 3000);
+        joinWaitlist(conference, 2, 1000);
+        joinWaitlist(conference, 4, 2000);
+        api.unregisterFromConference(attendee(0), conference.getWebsafeKey());
+
+        assertEquals(1, promote(conference));
+        assertTrue(isRegistered(conference, 2));
+        assertFalse(isRegistered(conference, 3));
+        assertFalse(isRegistered(conference, 4));
+        assertEquals(2, ofy().load().type(WaitlistEntry.class).count());
+    }
+
+    @Test
+    public void testRegisteredUsersAreSkipped() throws Exception {
+        Conference conference = createConference(2);
+        api.registerForConference(attendee(0), conference.getWebsafeKey());
+        api.registerForConference(attendee(1), conference.getWebsafeKey());
+        joinWaitlist(conference, 0, 1000);
+        joinWaitlist(conference, 2, 2000);
+        api.unregisterFromConference(attendee(1), conference.getWebsafeKey());
+
+        assertEquals(1, promote(conference));
+        assertTrue(isRegistered(conference, 2));
+        assertEquals(0, ofy().load().type(WaitlistEntry.class).count());
+        // Attendee 0 still holds a single seat.
+        assertEquals(2, ofy().load().type(Registration.class).count());
+    }
+
+    @Test
+    public void testEachTransactionPromotesAtMostFourUsers() throws Exception {
+        // 10 seats per shard, so a single transaction could book them all.
+        Conference conference = createConference(10 * SeatInventory.SHARD_COUNT);
+        for (int i = 0; i < 10; i++) {
+            joinWaitlist(conference, i, 1000 + i);
+        }
+
+        assertEquals(10, promote(conference));
+        List<Integer> booked = new ArrayList<>();
+        ofy().clear();
+        for (SeatShard shard : SeatInventory.loadShards(conference)) {
+            if (shard.getSeatsAvailable() < shard.getCapacity()) {
+                booked.add(shard.getCapacity() - shard.getSeatsAvailable());
+            }
+        }
+        assertEquals(3, booked.size());
+        assertTrue(booked.contains(2));
+        for (int seats : booked) {
+            assertTrue(seats <= 4);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(isRegistered(conference, i));
+        }
+    }
+
+    @Test
+    public void testRegistrationGoesThroughTheWaitlist() throws Exception {
+        Conference conference = createConference(1);
+        api.registerForConference(attendee(0), conference.getWebsafeKey());
+        api.joinWaitlist(attendee(1), conference.getWebsafeKey());
+        api.unregisterFromConference(attendee(0), conference.getWebsafeKey());
+        try {
+            api.registerForConference(attendee(2), conference.getWebsafeKey());
+            fail("The seat given back is held for the waitlist.");
+        } catch (ConflictException e) {
+            // Expected.
+        }
+
+        assertEquals(1, promote(conference));
+        assertTrue(isRegistered(conference, 1));
+        assertFalse(isRegistered(conference, 2));
+    }
+}
@@ -0,0 +1,35 @@
+package com.google.devrel.training.conference.servlet;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of the fields of the attendee export.
+ */
+public class ExportAttendeesServletTest {
+
+    @Test
+    public void testPlainValuesAreKept() {
+        assertEquals("Jane Doe", ExportAttendeesServlet.csv("Jane Doe"));
+        assertEquals("", ExportAttendeesServlet.csv(null));
+        assertEquals("", ExportAttendeesServlet.csv(""));
+    }
+
+    @Test
+    public void testSeparatorsAreQuoted() {
+        assertEquals("\"Doe, Jane\"", ExportAttendeesServlet.csv("Doe, Jane"));
+        assertEquals("\"Jane \"\"JD\"\" Doe\"", ExportAttendeesServlet.csv("Jane \"JD\" Doe"));
+    }
+
+    @Test
+    public void testFormulasAreReadAsText() {
+        assertEquals("\"'=HYPERLINK(\"\"x\"\")\"",
+                ExportAttendeesServlet.csv("=HYPERLINK(\"x\")"));
+        assertEquals("'+1", ExportAttendeesServlet.csv("+1"));
+        assertEquals("'-1", ExportAttendeesServlet.csv("-1"));
+        assertEquals("'@SUM(A1)", ExportAttendeesServlet.csv("@SUM(A1)"));
+        assertEquals("\"'=1,2\"", ExportAttendeesServlet.csv("=1,2"));
+        assertEquals("a=1", ExportAttendeesServlet.csv("a=1"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.google.devrel.training.conference.servlet;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the names the requests are counted under.
+ */
+public class RequestScopeFilterTest {
+
+    private final RequestScopeFilter filter = new RequestScopeFilter();
+
+    /**
+     * Returns a proxy of the given interface answering the given method only.
+     */
+    private static <T> T proxy(Class<T> type, final String methodName, final Object result) {
+        return type.cast(Proxy.newProxyInstance(RequestScopeFilterTest.class.getClassLoader(),
+                new Class<?>[] {type},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Exception {
+                        if (!methodName.equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        if ("getResourceAsStream".equals(methodName)) {
+                            return new FileInputStream("src/main/webapp" + args[0]);
+                        }
+                        return result;
+                    }
+                }));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // Reads the servlet mappings of the app's web.xml.
+        filter.init(proxy(FilterConfig.class, "getServletContext",
+                proxy(ServletContext.class, "getResourceAsStream", null)));
+    }
+
+    private String name(String uri) {
+        return filter.getEndpointName(proxy(HttpServletRequest.class, "getRequestURI", uri));
+    }
+
+    @Test
+    public void testEndpointsAreNamedAfterTheirMethod() {
+        assertEquals("getProfile", name("/_ah/spi/com.google.devrel.training.conference.spi"
+                + ".ConferenceApi.getProfile"));
+        assertEquals(RequestScopeFilter.OTHER, name("/_ah/spi/com.google.devrel.training"
+                + ".conference.spi.ConferenceApi.noSuchMethod12345"));
+    }
+
+    @Test
+    public void testServletsAreNamedAfterTheirPath() {
+        assertEquals("/tasks/sync_seats_available", name("/tasks/sync_seats_available"));
+        assertEquals("/admin/stats", name("/admin/stats"));
+    }
+
+    @Test
+    public void testAnythingElseIsOther() {
+        assertEquals(RequestScopeFilter.OTHER, name("/"));
+        assertEquals(RequestScopeFilter.OTHER, name("/js/app.js"));
+        assertEquals(RequestScopeFilter.OTHER, name("/random/path/8f3a2c"));
+    }
+}
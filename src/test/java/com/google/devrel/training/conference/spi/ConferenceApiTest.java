@@ -0,0 +1,156 @@
+package com.google.devrel.training.conference.spi;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.ConferenceSnapshot;
+import com.google.devrel.training.conference.domain.Profile;
+import com.google.devrel.training.conference.domain.SeatShard;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Field;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Filter;
+import com.google.devrel.training.conference.form.ConferenceQueryForm.Operator;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.service.ProfileCache;
+import com.google.devrel.training.conference.service.SeatInventory;
+import com.google.api.server.spi.response.CollectionResponse;
+import com.googlecode.objectify.Key;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the validation of the ConferenceApi requests.
+ */
+public class ConferenceApiTest {
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+    }
+
+    @After
+    public void tearDown() {
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private static ConferenceForm form(int maxAttendees) {
+        return new ConferenceForm("Conference", "", null, null, null, null, maxAttendees);
+    }
+
+    @Test
+    public void testCreateWithInvalidCoordinatesWritesNothing() throws Exception {
+        try {
+            api.createConference(organizer, form(10).location(91.0, 0.0));
+            fail("The latitude is out of range.");
+        } catch (BadRequestException e) {
+            // Expected.
+        }
+        try {
+            api.createConference(organizer, form(10).location(45.0, null));
+            fail("The longitude is missing.");
+        } catch (BadRequestException e) {
+            // Expected.
+        }
+        assertEquals(0, ofy().load().type(SeatShard.class).count());
+        assertEquals(0, ofy().load().type(Conference.class).count());
+    }
+
+    @Test
+    public void testUpdateWithInvalidCoordinatesKeepsTheShards() throws Exception {
+        Conference conference = api.createConference(organizer, form(10));
+        try {
+            api.updateConference(organizer, form(50).location(0.0, 181.0),
+                    conference.getWebsafeKey());
+            fail("The longitude is out of range.");
+        } catch (BadRequestException e) {
+            // Expected.
+        }
+        ofy().clear();
+        int capacity = 0;
+        for (SeatShard shard : SeatInventory.loadShards(conference)) {
+            capacity += shard.getCapacity();
+        }
+        assertEquals(10, capacity);
+        assertEquals(10, api.getConference(conference.getWebsafeKey()).getMaxAttendees());
+    }
+
+    @Test
+    public void testSaveProfileDoesNotRestoreAStaleCachedProfile() throws Exception {
+        // The ProfileCache of this instance still holds the legacy list...
+        Key<Profile> profileKey = Key.create(Profile.class, organizer.getUserId());
+        Entity legacy = new Entity(profileKey.getRaw());
+        legacy.setProperty("userId", organizer.getUserId());
+        legacy.setProperty("displayName", "Organizer");
+        legacy.setProperty("conferenceKeysToAttend", Arrays.asList("websafeConferenceKey"));
+        DatastoreServiceFactory.getDatastoreService().put(legacy);
+        ofy().clear();
+        ProfileCache.put(ofy().load().key(profileKey).now());
+        // ...which another instance has migrated in the meantime.
+        ofy().save().entity(new Profile(organizer.getUserId(), "Organizer",
+                organizer.getEmail(), null)).now();
+        ofy().clear();
+
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+        ofy().clear();
+        assertTrue(ofy().load().key(profileKey).now().getConferenceKeysToAttend().isEmpty());
+        assertTrue(api.getProfile(organizer).getConferenceKeysToAttend().isEmpty());
+    }
+
+    @Test
+    public void testNearbyConferencesHaveTheirCoordinates() throws Exception {
+        api.createConference(organizer, form(10).location(51.5, -0.12));
+        ofy().clear();
+        ConferenceSnapshot snapshot = api.nearbyConferences(51.51, -0.13, 10, null)
+                .getItems().iterator().next();
+        assertEquals(51.5, snapshot.getLatitude(), 0);
+        assertEquals(-0.12, snapshot.getLongitude(), 0);
+    }
+
+    @Test
+    public void testNotEqualFiltersArePaged() throws Exception {
+        for (int maxAttendees = 1; maxAttendees <= 5; maxAttendees++) {
+            api.createConference(organizer, form(maxAttendees));
+        }
+        ofy().clear();
+        int found = 0;
+        String cursor = null;
+        do {
+            ConferenceQueryForm form = new ConferenceQueryForm().pageSize(2)
+                    .filter(new Filter(Field.MAX_ATTENDEES, Operator.NE, "3"));
+            CollectionResponse<ConferenceSnapshot> page =
+                    api.queryConferences(cursor == null ? form : form.cursor(cursor));
+            for (ConferenceSnapshot snapshot : page.getItems()) {
+                assertTrue(snapshot.getMaxAttendees() != 3);
+                found++;
+            }
+            cursor = page.getNextPageToken();
+            if (page.getItems().size() == 2) {
+                assertNotNull("A full page has a nextPageToken.", cursor);
+            }
+        } while (cursor != null);
+        assertEquals(4, found);
+    }
+}
@@ -0,0 +1,143 @@
+package com.google.devrel.training.conference.spi;
+
+import static com.google.devrel.training.conference.service.OfyService.ofy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.server.spi.response.ConflictException;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.devrel.training.conference.LocalServices;
+import com.google.devrel.training.conference.domain.Conference;
+import com.google.devrel.training.conference.domain.Registration;
+import com.google.devrel.training.conference.form.ConferenceForm;
+import com.google.devrel.training.conference.form.ProfileForm;
+import com.google.devrel.training.conference.service.SeatInventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Load test of concurrent registrations for one conference against the local datastore.
+ *
+ * More users than seats register from several threads at once, then unregister. No seat may be
+ * booked twice or lost, and the throughput of both phases is printed.
+ */
+public class RegistrationContentionTest {
+
+    private static final int THREADS = 8;
+
+    private static final int SEATS = 60;
+
+    private static final int USERS = 240;
+
+    private final LocalServiceTestHelper helper = LocalServices.helper(false);
+
+    private final ConferenceApi api = new ConferenceApi();
+
+    private final User organizer = new User("organizer@example.com", "example.com", "organizer");
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        helper.setUp();
+        api.saveProfile(organizer, new ProfileForm("Organizer", null));
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        ofy().clear();
+        helper.tearDown();
+    }
+
+    private static User attendee(int i) {
+        return new User("attendee" + i + "@example.com", "example.com", "attendee" + i);
+    }
+
+    /**
+     * The outcomes of one phase of the load.
+     */
+    private static class Outcome {
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+        long millis;
+    }
+
+    /**
+     * Runs the registrations, or the unregistrations, of all the users on the thread pool.
+     */
+    private Outcome runAll(final String websafeConferenceKey, final boolean register)
+            throws Exception {
+        final ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+        final Outcome outcome = new Outcome();
+        List<Callable<Void>> calls = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            final User user = attendee(i);
+            calls.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    // The local services are bound to the environment of the calling thread.
+                    ApiProxy.setEnvironmentForCurrentThread(environment);
+                    try {
+                        boolean done = register
+                                ? api.registerForConference(user, websafeConferenceKey)
+                                        .getResult()
+                                : api.unregisterFromConference(user, websafeConferenceKey)
+                                        .getResult();
+                        (done ? outcome.succeeded : outcome.refused).incrementAndGet();
+                    } catch (ConflictException e) {
+                        outcome.refused.incrementAndGet();
+                    } finally {
+                        ofy().clear();
+                    }
+                    return null;
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Future<Void> future : executor.invokeAll(calls)) {
+            future.get();
+        }
+        outcome.millis = System.currentTimeMillis() - start;
+        System.out.printf("%s: %d users on %d threads, %d succeeded, %d refused, %d ms, "
+                + "%.0f calls/s%n", register ? "register" : "unregister", USERS, THREADS,
+                outcome.succeeded.get(), outcome.refused.get(), outcome.millis,
+                USERS * 1000.0 / Math.max(1, outcome.millis));
+        return outcome;
+    }
+
+    @Test
+    public void testConcurrentRegistrationsNeverOverbook() throws Exception {
+        Conference conference = api.createConference(organizer,
+                new ConferenceForm("Conference", "", null, null, null, null, SEATS));
+        String key = conference.getWebsafeKey();
+
+        Outcome registrations = runAll(key, true);
+        assertEquals(USERS, registrations.succeeded.get() + registrations.refused.get());
+        assertEquals(SEATS, registrations.succeeded.get());
+        ofy().clear();
+        assertEquals(0, SeatInventory.countSeatsAvailable(SeatInventory.loadShards(conference)));
+        assertEquals(SEATS, ofy().load().type(Registration.class).count());
+
+        Outcome unregistrations = runAll(key, false);
+        assertEquals(SEATS, unregistrations.succeeded.get());
+        ofy().clear();
+        assertEquals(SEATS,
+                SeatInventory.countSeatsAvailable(SeatInventory.loadShards(conference)));
+        assertEquals(0, ofy().load().type(Registration.class).count());
+        assertTrue(api.registerForConference(attendee(USERS), key).getResult());
+    }
+}